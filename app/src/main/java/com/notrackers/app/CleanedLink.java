@@ -0,0 +1,40 @@
+package com.notrackers.app;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/** One link of a multi-item share: its original form and, once ready, its cleaned one. */
+final class CleanedLink {
+
+    /** Rows are the same link at the same position; contents change once when it is cleaned. */
+    static final DiffUtil.ItemCallback<CleanedLink> DIFF = new DiffUtil.ItemCallback<CleanedLink>() {
+        @Override
+        public boolean areItemsTheSame(CleanedLink oldItem, CleanedLink newItem) {
+            return oldItem.index == newItem.index;
+        }
+
+        @Override
+        public boolean areContentsTheSame(CleanedLink oldItem, CleanedLink newItem) {
+            return oldItem.original.equals(newItem.original) &&
+                (oldItem.cleaned == null ? newItem.cleaned == null : oldItem.cleaned.equals(newItem.cleaned));
+        }
+    };
+
+    final int index;
+    final String original;
+    // Null while the link is being cleaned
+    final String cleaned;
+
+    CleanedLink(int index, String original, String cleaned) {
+        this.index = index;
+        this.original = original;
+        this.cleaned = cleaned;
+    }
+
+    boolean isCleaned() {
+        return cleaned != null;
+    }
+
+    CleanedLink withCleaned(String cleaned) {
+        return new CleanedLink(index, original, cleaned);
+    }
+}
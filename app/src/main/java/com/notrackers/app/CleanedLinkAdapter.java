@@ -0,0 +1,53 @@
+package com.notrackers.app;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Shows the links of a multi-item share as they are cleaned. Lists are
+ * diffed off the main thread, so submitting the whole list after each
+ * result only rebinds the row that changed.
+ */
+final class CleanedLinkAdapter extends ListAdapter<CleanedLink, CleanedLinkAdapter.Holder> {
+
+    CleanedLinkAdapter() {
+        super(CleanedLink.DIFF);
+    }
+
+    @Override
+    public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_cleaned_link, parent, false);
+        return new Holder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position) {
+        CleanedLink link = getItem(position);
+        if (link.isCleaned()) {
+            holder.cleaned.setText(link.cleaned);
+            holder.cleaned.setAlpha(1f);
+        } else {
+            holder.cleaned.setText("Cleaning...");
+            holder.cleaned.setAlpha(0.5f);
+        }
+        // The original is only worth showing when something was removed
+        boolean changed = link.isCleaned() && !link.cleaned.equals(link.original);
+        holder.original.setText(link.original);
+        holder.original.setVisibility(changed || !link.isCleaned() ? View.VISIBLE : View.GONE);
+    }
+
+    static final class Holder extends RecyclerView.ViewHolder {
+        final TextView cleaned;
+        final TextView original;
+
+        Holder(View view) {
+            super(view);
+            cleaned = view.findViewById(R.id.cleanedLink);
+            original = view.findViewById(R.id.originalLink);
+        }
+    }
+}
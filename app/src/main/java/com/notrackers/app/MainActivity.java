@@ -7,6 +7,10 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -16,6 +20,17 @@ import android.widget.TextView;
 import android.widget.Toast;
 import android.text.Html;
 import androidx.core.text.HtmlCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MainActivity extends Activity {
     private EditText urlEditText;
@@ -28,11 +43,35 @@ public class MainActivity extends Activity {
     private TextView celebrationMessage;
     private TextView cleanUrlLabel;
     private TextView infoMessage;
+    private TextView cleanPreview;
+    private RecyclerView batchList;
     private String cleanedUrl;
     private String originalUrl;
     private boolean hasCleanedUrl = false;
     private boolean openedViaShare = false;
 
+    // Cleaning runs off the main thread; a newer request supersedes older ones
+    private final ExecutorService cleanExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Future<?> pendingClean;
+    private int cleanGeneration = 0;
+
+    // Edits are previewed once typing pauses. The cleaner is only touched on
+    // cleanExecutor, and a preview is dropped once a newer edit exists. The
+    // last preview stays up until a newer one replaces it, so it does not
+    // flicker while typing.
+    private static final long PREVIEW_DELAY_MS = 150;
+    private final IncrementalCleaner previewCleaner = new IncrementalCleaner();
+    private final Runnable previewRunnable = this::previewInBackground;
+    private volatile int previewGeneration = 0;
+    private boolean settingText = false;
+
+    // A multi-link share is cleaned link by link on its own pool; batchItems
+    // is null unless one is showing
+    private SharedLinkCleaner sharedLinkCleaner;
+    private CleanedLinkAdapter batchAdapter;
+    private List<CleanedLink> batchItems;
+    private int batchRemaining = 0;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,6 +88,14 @@ public class MainActivity extends Activity {
         celebrationMessage = findViewById(R.id.celebrationMessage);
         cleanUrlLabel = findViewById(R.id.cleanUrlLabel);
         infoMessage = findViewById(R.id.infoMessage);
+        cleanPreview = findViewById(R.id.cleanPreview);
+        batchList = findViewById(R.id.batchList);
+
+        sharedLinkCleaner = new SharedLinkCleaner(mainHandler);
+        batchAdapter = new CleanedLinkAdapter();
+        batchList.setLayoutManager(new LinearLayoutManager(this));
+        batchList.setHasFixedSize(true);
+        batchList.setAdapter(batchAdapter);
 
         String infoText = "Big Tech tracks what you share — and with whom — quietly building profiles that invade your privacy and that of those you share content with.<br/><br/>" +
                 "<b>noTrackers</b> helps you stop that.<br/><br/>" +
@@ -57,31 +104,40 @@ public class MainActivity extends Activity {
         infoMessage.setText(HtmlCompat.fromHtml(infoText, HtmlCompat.FROM_HTML_MODE_LEGACY));
 
         Intent intent = getIntent();
-        if (intent != null && Intent.ACTION_SEND.equals(intent.getAction())) {
+        String action = intent != null ? intent.getAction() : null;
+        if (Intent.ACTION_SEND.equals(action) || Intent.ACTION_SEND_MULTIPLE.equals(action)) {
             openedViaShare = true;
-            String sharedText = intent.getStringExtra(Intent.EXTRA_TEXT);
-            if (sharedText != null && isUrl(sharedText)) {
-                originalUrl = sharedText;
-                cleanedUrl = removeTrackingParameters(sharedText);
-                urlEditText.setText(cleanedUrl);
-                hasCleanedUrl = true;
-                updateUIState();
-            }
+            updateUIState();
+            findLinksInBackground(Intent.ACTION_SEND_MULTIPLE.equals(action), sharedTexts(intent),
+                    intent.getStringExtra(Intent.EXTRA_TEXT));
         } else {
             openedViaShare = false;
             updateUIState();
         }
 
+        urlEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!settingText) {
+                    schedulePreview();
+                }
+            }
+        });
+
         securePrivacyButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 String inputUrl = urlEditText.getText().toString().trim();
-                if (!inputUrl.isEmpty() && isUrl(inputUrl)) {
-                    originalUrl = inputUrl;
-                    cleanedUrl = removeTrackingParameters(inputUrl);
-                    urlEditText.setText(cleanedUrl);
-                    hasCleanedUrl = true;
-                    updateUIState();
+                if (!inputUrl.isEmpty()) {
+                    cleanInBackground(inputUrl, true);
                 } else {
                     Toast.makeText(MainActivity.this, "Please enter a valid URL", Toast.LENGTH_SHORT).show();
                 }
@@ -91,7 +147,10 @@ public class MainActivity extends Activity {
         refreshButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                urlEditText.setText("");
+                cancelPendingClean();
+                cancelPreview();
+                cancelBatch();
+                setUrlText("");
                 cleanedUrl = null;
                 originalUrl = null;
                 hasCleanedUrl = false;
@@ -121,7 +180,259 @@ public class MainActivity extends Activity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        cancelPendingClean();
+        cancelPreview();
+        cleanExecutor.shutdownNow();
+        sharedLinkCleaner.shutdown();
+        super.onDestroy();
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        CleanMetrics metrics = NoTrackersApplication.metrics();
+        if (metrics != null) {
+            metrics.dump(prefix, writer);
+        }
+    }
+
+    private void cleanInBackground(final String input, final boolean reportInvalid) {
+        cancelPendingClean();
+        cancelPreview();
+        final int generation = cleanGeneration;
+        setCleaningPending(true);
+        pendingClean = cleanExecutor.submit(() -> {
+            final String cleaned = isUrl(input) ? removeTrackingParameters(input) : cleanLinksInText(input);
+            if (!Thread.currentThread().isInterrupted()) {
+                mainHandler.post(() -> onCleaned(generation, input, cleaned, reportInvalid));
+            }
+        });
+    }
+
+    private void onCleaned(int generation, String input, String cleaned, boolean reportInvalid) {
+        if (generation != cleanGeneration || isFinishing()) {
+            return;
+        }
+        pendingClean = null;
+        setCleaningPending(false);
+        if (cleaned == null) {
+            if (reportInvalid) {
+                Toast.makeText(this, "Please enter a valid URL", Toast.LENGTH_SHORT).show();
+            }
+            return;
+        }
+        originalUrl = input;
+        cleanedUrl = cleaned;
+        setUrlText(cleanedUrl);
+        hasCleanedUrl = true;
+        updateUIState();
+    }
+
+    // Finds the links of a share on cleanExecutor, then cleans them as a
+    // batch if there is more than one, or else the shared text
+    private void findLinksInBackground(final boolean multiple, final List<CharSequence> texts,
+                                       final String sharedText) {
+        cancelPendingClean();
+        final int generation = cleanGeneration;
+        setCleaningPending(true);
+        pendingClean = cleanExecutor.submit(() -> {
+            final List<String> links = sharedLinks(texts);
+            if (!Thread.currentThread().isInterrupted()) {
+                mainHandler.post(() -> onLinksFound(generation, multiple, links, sharedText));
+            }
+        });
+    }
+
+    private void onLinksFound(int generation, boolean multiple, List<String> links, String sharedText) {
+        if (generation != cleanGeneration || isFinishing()) {
+            return;
+        }
+        pendingClean = null;
+        setCleaningPending(false);
+        if (multiple || links.size() > 1) {
+            if (!links.isEmpty()) {
+                cleanBatch(links);
+            } else {
+                Toast.makeText(this, "No links found in shared items", Toast.LENGTH_SHORT).show();
+            }
+        } else if (sharedText != null) {
+            cleanInBackground(sharedText, false);
+        }
+    }
+
+    /**
+     * Every shared text in a share. Apps put several shared texts in an
+     * EXTRA_TEXT list, in ClipData, or both.
+     */
+    private static List<CharSequence> sharedTexts(Intent intent) {
+        List<CharSequence> texts = new ArrayList<>();
+        Object extra = intent.getExtras() != null ? intent.getExtras().get(Intent.EXTRA_TEXT) : null;
+        if (extra instanceof CharSequence) {
+            texts.add((CharSequence) extra);
+        } else if (extra instanceof List) {
+            for (Object item : (List<?>) extra) {
+                if (item instanceof CharSequence) {
+                    texts.add((CharSequence) item);
+                }
+            }
+        }
+        ClipData clip = intent.getClipData();
+        if (clip != null) {
+            for (int i = 0; i < clip.getItemCount(); i++) {
+                CharSequence text = clip.getItemAt(i).getText();
+                if (text != null) {
+                    texts.add(text);
+                }
+            }
+        }
+        return texts;
+    }
+
+    /** Every distinct link in the shared texts, in order; one text may hold several. */
+    private static List<String> sharedLinks(List<CharSequence> texts) {
+        Set<String> links = new LinkedHashSet<>();
+        for (CharSequence text : texts) {
+            links.addAll(TextCleaner.findLinks(text));
+        }
+        return new ArrayList<>(links);
+    }
+
+    private void cleanBatch(List<String> links) {
+        cancelPendingClean();
+        cancelPreview();
+        batchItems = new ArrayList<>(links.size());
+        for (int i = 0; i < links.size(); i++) {
+            batchItems.add(new CleanedLink(i, links.get(i), null));
+        }
+        batchRemaining = links.size();
+        batchAdapter.submitList(new ArrayList<>(batchItems));
+        updateUIState();
+        sharedLinkCleaner.clean(links, this::onLinkCleaned);
+    }
+
+    private void onLinkCleaned(int index, String cleaned) {
+        if (batchItems == null || isFinishing()) {
+            return;
+        }
+        batchItems.set(index, batchItems.get(index).withCleaned(cleaned));
+        batchRemaining--;
+        batchAdapter.submitList(new ArrayList<>(batchItems));
+        updateUIState();
+    }
+
+    private void cancelBatch() {
+        sharedLinkCleaner.cancel();
+        batchItems = null;
+        batchRemaining = 0;
+        batchAdapter.submitList(null);
+    }
+
+    // The links of the batch joined one per line, as copied or shared
+    private String batchText(boolean cleaned) {
+        StringBuilder text = new StringBuilder();
+        for (CleanedLink link : batchItems) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(cleaned && link.isCleaned() ? link.cleaned : link.original);
+        }
+        return text.toString();
+    }
+
+    private void cancelPendingClean() {
+        cleanGeneration++;
+        if (pendingClean != null) {
+            pendingClean.cancel(true);
+            pendingClean = null;
+            setCleaningPending(false);
+        }
+    }
+
+    private void schedulePreview() {
+        mainHandler.removeCallbacks(previewRunnable);
+        previewGeneration++;
+        mainHandler.postDelayed(previewRunnable, PREVIEW_DELAY_MS);
+    }
+
+    private void previewInBackground() {
+        final String input = urlEditText.getText().toString().trim();
+        final int generation = previewGeneration;
+        if (input.isEmpty()) {
+            cleanPreview.setVisibility(View.GONE);
+            return;
+        }
+        cleanExecutor.execute(() -> {
+            if (generation != previewGeneration) {
+                return;
+            }
+            final String cleaned = isUrl(input) ? previewCleaner.clean(input) : cleanLinksInText(input);
+            mainHandler.post(() -> onPreviewCleaned(generation, input, cleaned));
+        });
+    }
+
+    private void onPreviewCleaned(int generation, String input, String cleaned) {
+        if (generation != previewGeneration || isFinishing()) {
+            return;
+        }
+        if (cleaned == null || cleaned.equals(input)) {
+            cleanPreview.setVisibility(View.GONE);
+        } else {
+            cleanPreview.setText("Clean: " + cleaned);
+            cleanPreview.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private void cancelPreview() {
+        mainHandler.removeCallbacks(previewRunnable);
+        previewGeneration++;
+        cleanPreview.setVisibility(View.GONE);
+    }
+
+    // Sets the field's text without previewing it
+    private void setUrlText(String text) {
+        settingText = true;
+        urlEditText.setText(text);
+        settingText = false;
+    }
+
+    private void setCleaningPending(boolean pending) {
+        securePrivacyButton.setEnabled(!pending);
+        securePrivacyButton.setText(pending ? "Cleaning..." : "Secure my privacy");
+        if (!hasCleanedUrl) {
+            urlEditText.setHint(pending ? "Cleaning link..." : "Enter or paste URL here...");
+        }
+    }
+
     private void updateUIState() {
+        boolean batch = batchItems != null;
+        batchList.setVisibility(batch ? View.VISIBLE : View.GONE);
+        urlEditText.setVisibility(batch ? View.GONE : View.VISIBLE);
+        copyButton.setText(batch ? "Copy all" : "Copy URL");
+        shareButton.setText(batch ? "Share all" : "Share");
+        if (batch) {
+            // Bulk copy and share wait for the last link
+            boolean done = batchRemaining == 0;
+            cleanUrlLabel.setText(done
+                    ? batchItems.size() + " clean URLs (tracking parameters removed):"
+                    : "Cleaning links: " + (batchItems.size() - batchRemaining) + " of " + batchItems.size() + " done");
+            cleanUrlLabel.setVisibility(View.VISIBLE);
+            celebrationMessage.setVisibility(done ? View.VISIBLE : View.GONE);
+            securePrivacyButton.setVisibility(View.GONE);
+            refreshButton.setVisibility(View.VISIBLE);
+            spreadWordCheckBox.setVisibility(View.VISIBLE);
+            copyButton.setVisibility(View.VISIBLE);
+            shareButton.setVisibility(View.VISIBLE);
+            copyButton.setEnabled(done);
+            shareButton.setEnabled(done);
+            reportButton.setVisibility(done ? View.VISIBLE : View.GONE);
+            infoMessage.setVisibility(View.GONE);
+            return;
+        }
+        cleanUrlLabel.setText("Clean URL (tracking parameters removed):");
+        copyButton.setEnabled(true);
+        shareButton.setEnabled(true);
         if (hasCleanedUrl) {
             cleanUrlLabel.setVisibility(View.VISIBLE);
             celebrationMessage.setVisibility(View.VISIBLE);
@@ -165,20 +476,28 @@ public class MainActivity extends Activity {
         return UrlCleaner.cleanUrl(url);
     }
 
+    // Cleans every link inside shared text such as "check this out https://...",
+    // or returns null when the text contains no link at all.
+    private String cleanLinksInText(String text) {
+        StringBuilder cleaned = new StringBuilder(text.length());
+        return TextCleaner.cleanText(text, cleaned) > 0 ? cleaned.toString() : null;
+    }
+
     private void copyToClipboard() {
-        String url = urlEditText.getText().toString().trim();
+        String url = batchItems != null ? batchText(true) : urlEditText.getText().toString().trim();
         if (!url.isEmpty()) {
             ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-            ClipData clip = ClipData.newPlainText("Cleaned URL", url);
+            ClipData clip = ClipData.newPlainText(batchItems != null ? "Cleaned URLs" : "Cleaned URL", url);
             clipboard.setPrimaryClip(clip);
-            Toast.makeText(this, "URL copied to clipboard", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, batchItems != null ? batchItems.size() + " URLs copied to clipboard"
+                    : "URL copied to clipboard", Toast.LENGTH_SHORT).show();
         } else {
             Toast.makeText(this, "No URL to copy", Toast.LENGTH_SHORT).show();
         }
     }
 
     private void shareUrl() {
-        String url = urlEditText.getText().toString().trim();
+        String url = batchItems != null ? batchText(true) : urlEditText.getText().toString().trim();
         if (!url.isEmpty()) {
             Intent shareIntent = new Intent(Intent.ACTION_SEND);
             shareIntent.setType("text/plain");
@@ -198,9 +517,9 @@ public class MainActivity extends Activity {
     private void showReportDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Report Error");
-        builder.setMessage("This will send the original URL and cleaned URL to the developer (skfrin@proton.me) to help improve the app. You can edit the message to hide any information you don't want to share.\n\nDo you want to continue?");
+        builder.setMessage("This will send the original URL, the cleaned URL and the rules that changed it to the developer (skfrin@proton.me) to help improve the app. You can edit the message to hide any information you don't want to share.\n\nDo you want to continue?");
         builder.setPositiveButton("Send Report", (dialog, which) -> {
-            sendReportEmail();
+            explainInBackground();
         });
         builder.setNegativeButton("Cancel", (dialog, which) -> {
             dialog.dismiss();
@@ -208,9 +527,39 @@ public class MainActivity extends Activity {
         builder.show();
     }
 
-    private void sendReportEmail() {
-        String originalUrl = this.originalUrl != null ? this.originalUrl : "No original URL";
-        String cleanedUrl = urlEditText.getText().toString().trim();
+    // Re-cleans the original links with a trace of every rule that fired,
+    // so a report says what happened without reproducing it by hand
+    private void explainInBackground() {
+        final String input = batchItems != null ? batchText(false) : originalUrl;
+        cleanExecutor.execute(() -> {
+            final String trace = input != null ? explain(input) : null;
+            mainHandler.post(() -> {
+                if (!isFinishing()) {
+                    sendReportEmail(trace);
+                }
+            });
+        });
+    }
+
+    private static String explain(String input) {
+        List<String> links = TextCleaner.findLinks(input);
+        if (links.isEmpty()) {
+            links.add(input.trim());
+        }
+        StringBuilder trace = new StringBuilder();
+        for (String link : links) {
+            if (trace.length() > 0) {
+                trace.append("\n\n");
+            }
+            trace.append(UrlCleaner.explainUrl(link));
+        }
+        return trace.toString();
+    }
+
+    private void sendReportEmail(String trace) {
+        String originalUrl = batchItems != null ? batchText(false)
+                : this.originalUrl != null ? this.originalUrl : "No original URL";
+        String cleanedUrl = batchItems != null ? batchText(true) : urlEditText.getText().toString().trim();
         if (cleanedUrl.isEmpty()) {
             cleanedUrl = "No cleaned URL";
         }
@@ -220,6 +569,7 @@ public class MainActivity extends Activity {
                 "I'm reporting an issue with the noTrackers app:\n\n" +
                 "Original URL:\n" + originalUrl + "\n\n" +
                 "Cleaned URL:\n" + cleanedUrl + "\n\n" +
+                (trace != null ? "Cleaning trace:\n" + trace + "\n\n" : "") +
                 "Issue description:\n" +
                 "[Please describe what went wrong or what you expected to happen]\n\n" +
                 "Thank you for your feedback!\n\n" +
@@ -0,0 +1,68 @@
+package com.notrackers.app;
+
+import android.app.Application;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+public class NoTrackersApplication extends Application {
+    private static final String TAG = "NoTrackers";
+    private static final String RULE_PACK_ASSET = "notrackers/trackers.ntrp";
+    private static final String PERSISTENT_CACHE_DIR = "clean-cache";
+
+    private static CleanMetrics metrics;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        loadRulePack();
+        openPersistentCache();
+        // CleanMetrics counts with LongAdder, which needs API 24
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            metrics = new CleanMetrics();
+            UrlCleaner.setListener(metrics);
+        }
+    }
+
+    /**
+     * Cleaner metrics for {@code adb shell dumpsys activity com.notrackers.app},
+     * or null below API 24.
+     */
+    static CleanMetrics metrics() {
+        return metrics;
+    }
+
+    // Opening recovers the log, so it happens off the main thread; until it
+    // is installed the cleaner simply runs without it. The OS reclaims the
+    // mapping when the process dies, and recovery covers unflushed writes.
+    private void openPersistentCache() {
+        File directory = new File(getCacheDir(), PERSISTENT_CACHE_DIR);
+        new Thread(() -> {
+            try {
+                UrlCleaner.setPersistentCache(PersistentCache.builder(directory)
+                        .maximumBytes(4L * 1024 * 1024)
+                        .maximumEntries(20_000)
+                        .build());
+            } catch (IOException e) {
+                Log.w(TAG, "Could not open persistent cache", e);
+            }
+        }, "persistent-cache-open").start();
+    }
+
+    // Maps the rule pack straight out of the APK. The asset is stored
+    // uncompressed (see noCompress in build.gradle), so this reads nothing
+    // up front; sections are paged in as URLs need them.
+    private void loadRulePack() {
+        try (AssetFileDescriptor descriptor = getAssets().openFd(RULE_PACK_ASSET);
+             FileInputStream in = descriptor.createInputStream()) {
+            UrlCleaner.setRulePack(RulePack.map(in.getChannel(),
+                    descriptor.getStartOffset(), descriptor.getLength()));
+        } catch (IOException e) {
+            // UrlCleaner falls back to the copy bundled in the cleaner library
+            Log.w(TAG, "Could not map rule pack asset", e);
+        }
+    }
+}
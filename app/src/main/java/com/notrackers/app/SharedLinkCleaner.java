@@ -0,0 +1,82 @@
+package com.notrackers.app;
+
+import android.os.Handler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cleans the links of a multi-item share on a bounded background pool.
+ * Each link is its own task, and its result is posted to the main thread
+ * as soon as it is ready, so a slow link holds up neither the others nor
+ * the UI. Starting a new batch cancels the one before it. Call from the
+ * main thread only.
+ */
+final class SharedLinkCleaner {
+
+    /** Receives results on the main thread, in completion order. */
+    interface Listener {
+        void onLinkCleaned(int index, String cleaned);
+    }
+
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final Handler mainHandler;
+    private final UrlCleaner cleaner;
+    private final ThreadPoolExecutor executor;
+    private final List<Future<?>> pending = new ArrayList<>();
+    private int generation = 0;
+
+    SharedLinkCleaner(Handler mainHandler) {
+        this(mainHandler, UrlCleaner.defaultCleaner());
+    }
+
+    SharedLinkCleaner(Handler mainHandler, UrlCleaner cleaner) {
+        this.mainHandler = mainHandler;
+        this.cleaner = cleaner;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            runnable -> new Thread(runnable, "shared-link-clean-" + threadCount.incrementAndGet()));
+        // An idle pool costs no threads between shares
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Cleans {@code links}, reporting each by its index in the list. */
+    void clean(List<String> links, final Listener listener) {
+        cancel();
+        final int batch = generation;
+        for (int i = 0; i < links.size(); i++) {
+            final int index = i;
+            final String link = links.get(i);
+            pending.add(executor.submit(() -> {
+                final String cleaned = cleaner.clean(link);
+                if (!Thread.currentThread().isInterrupted()) {
+                    mainHandler.post(() -> {
+                        if (batch == generation) {
+                            listener.onLinkCleaned(index, cleaned);
+                        }
+                    });
+                }
+            }));
+        }
+    }
+
+    /** Drops the current batch; results already posted are ignored. */
+    void cancel() {
+        generation++;
+        for (Future<?> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
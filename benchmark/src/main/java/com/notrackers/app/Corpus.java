@@ -0,0 +1,46 @@
+package com.notrackers.app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checked-in benchmark inputs, one URL per line, grouped by host family
+ * under {@code src/main/resources/corpus}.
+ */
+final class Corpus {
+    
+    static final String YOUTUBE = "youtube";
+    static final String AMAZON = "amazon";
+    static final String GOOGLE_REDIRECT = "google-redirect";
+    static final String FACEBOOK_NESTED = "facebook-nested";
+    static final String CLEAN = "clean";
+    
+    private Corpus() {
+    }
+    
+    static String[] load(String family) {
+        String resource = "/corpus/" + family + ".txt";
+        InputStream in = Corpus.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalArgumentException("No corpus named " + family);
+        }
+        List<String> urls = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    urls.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return urls.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,144 @@
+package com.notrackers.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link UrlCleaner#cleanUrl} and its stages over each corpus.
+ * Every invocation walks the whole corpus, so scores are per URL. Stages
+ * that consume parsed components re-parse each URL first because
+ * normalization mutates them; subtract {@code parseUri} to isolate them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@OperationsPerInvocation(UrlCleanerBenchmark.BATCH)
+public class UrlCleanerBenchmark {
+    
+    static final int BATCH = 256;
+    
+    @Param({Corpus.YOUTUBE, Corpus.AMAZON, Corpus.GOOGLE_REDIRECT, Corpus.FACEBOOK_NESTED, Corpus.CLEAN})
+    public String corpus;
+    
+    private RulePack rules;
+    private String[] urls;
+    private UrlCleaner.UriComponents[] parsed;
+    private byte[][] utf8;
+    private ByteBuffer out;
+    
+    @Setup
+    public void setUp() {
+        rules = UrlCleaner.rulePack();
+        String[] family = Corpus.load(corpus);
+        urls = new String[BATCH];
+        parsed = new UrlCleaner.UriComponents[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            urls[i] = family[i % family.length];
+            parsed[i] = UrlCleaner.parseUri(urls[i]);
+        }
+        utf8 = new byte[BATCH][];
+        int longest = 0;
+        for (int i = 0; i < BATCH; i++) {
+            utf8[i] = urls[i].getBytes(StandardCharsets.UTF_8);
+            longest = Math.max(longest, utf8[i].length);
+        }
+        out = ByteBuffer.allocate(longest * 3);
+    }
+    
+    @Benchmark
+    public void cleanUrl(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(UrlCleaner.cleanUrl(url));
+        }
+    }
+    
+    /**
+     * The full pipeline without the quick path, as {@link #explain} runs it
+     * but with no trace: its time and allocation should match the pipeline
+     * before tracing existed.
+     */
+    @Benchmark
+    public void cleanFullPipeline(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(UrlCleaner.cleanUrl(url, false));
+        }
+    }
+    
+    /** The full pipeline recording a {@link CleanTrace}. */
+    @Benchmark
+    public void explain(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(UrlCleaner.explainUrl(url));
+        }
+    }
+    
+    /** The String API as a UTF-8 pipeline sees it: decode, clean, encode. */
+    @Benchmark
+    public void cleanUtf8ViaString(Blackhole bh) {
+        for (byte[] url : utf8) {
+            bh.consume(UrlCleaner.cleanUrl(new String(url, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Benchmark
+    public void cleanUtf8Bytes(Blackhole bh) {
+        for (byte[] url : utf8) {
+            out.clear();
+            bh.consume(UrlCleaner.defaultCleaner().clean(ByteBuffer.wrap(url), out));
+        }
+    }
+    
+    @Benchmark
+    public void redirectorDestination(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(rules.redirectors().destination(UrlCleaner.parseUri(url)));
+        }
+    }
+    
+    @Benchmark
+    public void parseUri(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(UrlCleaner.parseUri(url));
+        }
+    }
+    
+    @Benchmark
+    public void normalizeUrl(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(UrlCleaner.normalizeUrl(UrlCleaner.parseUri(url), rules.rewrites()));
+        }
+    }
+    
+    @Benchmark
+    public void cleanQueryParams(Blackhole bh) {
+        for (String url : urls) {
+            UrlCleaner.UriComponents components = UrlCleaner.parseUri(url);
+            bh.consume(UrlCleaner.cleanQueryParams(components.queryParams, rules.classifier(), 
+                rules.hostRules().lookup(components.host), null));
+        }
+    }
+    
+    @Benchmark
+    public void buildUri(Blackhole bh) {
+        for (UrlCleaner.UriComponents components : parsed) {
+            bh.consume(UrlCleaner.buildUri(components));
+        }
+    }
+}
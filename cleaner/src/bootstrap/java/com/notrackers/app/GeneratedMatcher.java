@@ -0,0 +1,27 @@
+package com.notrackers.app;
+
+/**
+ * Stands in for the generated matcher in the bootstrap build of the
+ * library, which the rule compiler and the matcher generator run against
+ * before the real one exists. No pack has fingerprint 0, so
+ * {@link RulePack} never calls it.
+ */
+final class GeneratedMatcher {
+
+    static final long PACK_FINGERPRINT = 0;
+
+    private GeneratedMatcher() {
+    }
+
+    static int classify(String key, int from, int to) {
+        throw new AssertionError();
+    }
+
+    static int classify(byte[] key, int from, int to) {
+        throw new AssertionError();
+    }
+
+    static int hostSection(String host) {
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,377 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates {@code GeneratedMatcher.java} from a text rule pack: the global
+ * key lists as code that switches on key length and first character and
+ * compares the remaining characters unrolled, and the host index as a
+ * switch per host label. Run by the {@code generateMatcher} task before
+ * the library compiles, against the bootstrap build of the library with
+ * its stub matcher; {@code MatcherCheck} then holds the real one to the
+ * tables.
+ */
+final class MatcherGenerator {
+
+    private MatcherGenerator() {
+    }
+
+    /** Usage: {@code MatcherGenerator <trackers.rules> <GeneratedMatcher.java>} */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: MatcherGenerator <rules> <output>");
+            System.exit(2);
+        }
+        String code = generate(args[0]);
+        Path output = Paths.get(args[1]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            out.write(code);
+        }
+    }
+
+    static String generate(String rulesFile) throws IOException {
+        RulePackCompiler.Source source;
+        try (Reader reader = Files.newBufferedReader(Paths.get(rulesFile), StandardCharsets.UTF_8)) {
+            source = RulePackCompiler.parse(reader);
+        }
+        long fingerprint = RulePack.load(ByteBuffer.wrap(RulePackCompiler.compile(source))).fingerprint();
+        return generate(source, fingerprint);
+    }
+
+    static String generate(RulePackCompiler.Source source, long fingerprint) {
+        Code code = new Code();
+        code.line("// Generated by MatcherGenerator from trackers.rules during the build.")
+            .line("package com.notrackers.app;")
+            .line("")
+            .line("/**")
+            .line(" * The bundled rule pack's global key lists and host index compiled to")
+            .line(" * code. {@link RulePack} uses it in place of the {@link KeyClassifier}")
+            .line(" * and {@link HostRules} tables for the pack whose fingerprint is")
+            .line(" * {@link #PACK_FINGERPRINT}, and the tables for any other pack.")
+            .line(" */")
+            .line("final class GeneratedMatcher {")
+            .line("")
+            .line("    static final long PACK_FINGERPRINT = 0x" + Long.toHexString(fingerprint).toUpperCase(Locale.ROOT) + "L;")
+            .line("")
+            .line("    private GeneratedMatcher() {")
+            .line("    }");
+
+        String[][] lists = {
+            {"dropExact", "exact", "GLOBAL_EXACT"},
+            {"dropPrefix", "prefix", "GLOBAL_PREFIX"},
+            {"wtPrefix", "prefix", "WT_PREFIX"},
+            {"redirectParam", "exact", "REDIRECT_PARAM"},
+        };
+        List<List<String>> keys = new ArrayList<>();
+        keys.add(source.global.drop);
+        keys.add(source.global.dropPrefixes);
+        keys.add(source.global.wtPrefixes);
+        keys.add(source.global.redirectParams);
+
+        for (String type : new String[] {"String", "byte[]"}) {
+            code.line("")
+                .line("    /** As {@link KeyClassifier#classify}, for the bundled pack. */")
+                .line("    static int classify(" + type + " key, int from, int to) {");
+            for (String[] list : lists) {
+                code.line("        if (" + list[0] + "(key, from, to)) {")
+                    .line("            return KeyClassifier." + list[2] + ";")
+                    .line("        }");
+            }
+            code.line("        return KeyClassifier.NONE;")
+                .line("    }");
+        }
+
+        hostSection(code, source);
+
+        for (int i = 0; i < lists.length; i++) {
+            Set<String> folded = new LinkedHashSet<>();
+            for (String key : keys.get(i)) {
+                folded.add(KeySet.fold(key));
+            }
+            for (String type : new String[] {"String", "byte[]"}) {
+                if (lists[i][1].equals("exact")) {
+                    exact(code, lists[i][0], type, folded);
+                } else {
+                    prefix(code, lists[i][0], type, folded);
+                }
+            }
+        }
+
+        code.line("")
+            .line("    // As KeySet folds keys")
+            .line("    private static char fold(char c) {")
+            .line("        if (c < 128) {")
+            .line("            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;")
+            .line("        }")
+            .line("        return Character.toLowerCase(c);")
+            .line("    }")
+            .line("}");
+        return code.toString();
+    }
+
+    // One method per key length, each switching on the first character;
+    // keeping them apart keeps every method well under the JIT's size limits
+    private static void exact(Code code, String name, String type, Set<String> keys) {
+        Map<Integer, List<String>> byLength = new TreeMap<>();
+        for (String key : keys) {
+            List<String> group = byLength.get(key.length());
+            if (group == null) {
+                group = new ArrayList<>();
+                byLength.put(key.length(), group);
+            }
+            group.add(key);
+        }
+        code.line("")
+            .line("    private static boolean " + name + "(" + type + " key, int from, int to) {")
+            .line("        switch (to - from) {");
+        for (int length : byLength.keySet()) {
+            code.line("            case " + length + ":")
+                .line("                return " + (length == 0 ? "true" : name + length + "(key, from)") + ";");
+        }
+        code.line("            default:")
+            .line("                return false;")
+            .line("        }")
+            .line("    }");
+        for (Map.Entry<Integer, List<String>> group : byLength.entrySet()) {
+            if (group.getKey() == 0) {
+                continue;
+            }
+            code.line("")
+                .line("    private static boolean " + name + group.getKey() + "(" + type + " key, int from) {");
+            byFirstChar(code, type, group.getValue(), false);
+            code.line("    }");
+        }
+    }
+
+    private static void prefix(Code code, String name, String type, Set<String> prefixes) {
+        code.line("")
+            .line("    private static boolean " + name + "(" + type + " key, int from, int to) {");
+        if (prefixes.contains("")) {
+            code.line("        return true;")
+                .line("    }");
+            return;
+        }
+        if (prefixes.isEmpty()) {
+            code.line("        return false;")
+                .line("    }");
+            return;
+        }
+        code.line("        int length = to - from;")
+            .line("        if (length == 0) {")
+            .line("            return false;")
+            .line("        }");
+        byFirstChar(code, type, new ArrayList<>(prefixes), true);
+        code.line("    }");
+    }
+
+    private static void byFirstChar(Code code, String type, List<String> keys, boolean prefixes) {
+        Map<Character, List<String>> byFirst = new TreeMap<>();
+        for (String key : keys) {
+            List<String> group = byFirst.get(key.charAt(0));
+            if (group == null) {
+                group = new ArrayList<>();
+                byFirst.put(key.charAt(0), group);
+            }
+            group.add(key);
+        }
+        code.line("        switch (fold(" + charAt(type, 0) + ")) {");
+        for (Map.Entry<Character, List<String>> group : byFirst.entrySet()) {
+            code.line("            case " + literal(group.getKey()) + ":");
+            List<String> tests = new ArrayList<>();
+            for (String key : group.getValue()) {
+                StringBuilder test = new StringBuilder();
+                if (prefixes && key.length() > 1) {
+                    test.append("length >= ").append(key.length());
+                }
+                for (int i = 1; i < key.length(); i++) {
+                    if (test.length() > 0) {
+                        test.append(" && ");
+                    }
+                    test.append("fold(").append(charAt(type, i)).append(") == ").append(literal(key.charAt(i)));
+                }
+                tests.add(test.length() > 0 ? test.toString() : "true");
+            }
+            if (tests.size() == 1) {
+                code.line("                return " + tests.get(0) + ";");
+            } else {
+                code.line("                return " + tests.get(0));
+                for (int i = 1; i < tests.size(); i++) {
+                    code.line("                    || " + tests.get(i) + (i == tests.size() - 1 ? ";" : ""));
+                }
+            }
+        }
+        code.line("            default:")
+            .line("                return false;")
+            .line("        }");
+    }
+
+    /**
+     * As {@link HostRules#lookup}: the longest registered domain, compared
+     * label by label from the right, else the first brand that is the
+     * registrable label.
+     */
+    private static void hostSection(Code code, RulePackCompiler.Source source) {
+        // Later names replace earlier ones, as in the pack's host index
+        Node root = new Node();
+        Map<String, Integer> brands = new LinkedHashMap<>();
+        for (int i = 0; i < source.hosts.size(); i++) {
+            RulePackCompiler.HostSection host = source.hosts.get(i);
+            for (String name : host.names) {
+                if (host.brand) {
+                    brands.put(name, i);
+                } else {
+                    root.put(name.toLowerCase(Locale.ROOT), i);
+                }
+            }
+        }
+        code.line("")
+            .line("    /** The index of {@code host}'s section in rules order, or -1. */")
+            .line("    static int hostSection(String host) {")
+            .line("        int section = domainSection(host);")
+            .line("        if (section >= 0) {")
+            .line("            return section;")
+            .line("        }");
+        if (!brands.isEmpty()) {
+            code.line("        long registrable = PublicSuffixes.registrableLabel(host);");
+            for (Map.Entry<String, Integer> brand : brands.entrySet()) {
+                code.line("        if (PublicSuffixes.isRegistrableLabel(host, registrable, " + literal(brand.getKey()) + ")) {")
+                    .line("            return " + brand.getValue() + ";")
+                    .line("        }");
+            }
+        }
+        code.line("        return -1;")
+            .line("    }")
+            .line("")
+            .line("    private static int domainSection(String host) {")
+            .line("        int best = -1;")
+            .line("        int end0 = host.length();");
+        labels(code, root, 0, "        ");
+        code.line("        return best;")
+            .line("    }");
+    }
+
+    private static void labels(Code code, Node node, int depth, String indent) {
+        if (node.children.isEmpty()) {
+            return;
+        }
+        String end = "end" + depth;
+        String dot = "dot" + depth;
+        Map<Integer, List<Map.Entry<String, Node>>> byLength = new TreeMap<>();
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            List<Map.Entry<String, Node>> group = byLength.get(child.getKey().length());
+            if (group == null) {
+                group = new ArrayList<>();
+                byLength.put(child.getKey().length(), group);
+            }
+            group.add(child);
+        }
+        code.line(indent + "if (" + end + " > 0) {")
+            .line(indent + "    int " + dot + " = host.lastIndexOf('.', " + end + " - 1);")
+            .line(indent + "    switch (" + end + " - " + dot + " - 1) {");
+        for (Map.Entry<Integer, List<Map.Entry<String, Node>>> group : byLength.entrySet()) {
+            code.line(indent + "        case " + group.getKey() + ":");
+            String keyword = "if";
+            for (Map.Entry<String, Node> child : group.getValue()) {
+                String label = child.getKey();
+                code.line(indent + "            " + keyword + " (host.regionMatches(true, " + dot + " + 1, " +
+                    literal(label) + ", 0, " + label.length() + ")) {");
+                Node next = child.getValue();
+                if (next.section >= 0) {
+                    code.line(indent + "                best = " + next.section + ";");
+                }
+                if (!next.children.isEmpty()) {
+                    code.line(indent + "                int end" + (depth + 1) + " = " + dot + ";");
+                    labels(code, next, depth + 1, indent + "                ");
+                }
+                keyword = "} else if";
+            }
+            code.line(indent + "            }")
+                .line(indent + "            break;");
+        }
+        code.line(indent + "        default:")
+            .line(indent + "            break;")
+            .line(indent + "    }")
+            .line(indent + "}");
+    }
+
+    private static String charAt(String type, int offset) {
+        String index = offset == 0 ? "from" : "from + " + offset;
+        return type.equals("String") ? "key.charAt(" + index + ")" : "(char) key[" + index + "]";
+    }
+
+    private static String literal(char c) {
+        if (c == '\'' || c == '\\') {
+            return "'\\" + c + "'";
+        }
+        return c >= 0x20 && c < 0x7F ? "'" + c + "'" : String.format("'\\u%04X'", (int) c);
+    }
+
+    private static String literal(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c >= 0x20 && c < 0x7F) {
+                literal.append(c);
+            } else {
+                literal.append(String.format("\\u%04X", (int) c));
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /** A domain label trie, as in {@link HostTrie}. */
+    private static final class Node {
+        final Map<String, Node> children = new LinkedHashMap<>();
+        int section = -1;
+
+        void put(String domain, int section) {
+            Node node = this;
+            int end = domain.length();
+            while (end > 0) {
+                int dot = domain.lastIndexOf('.', end - 1);
+                String label = domain.substring(dot + 1, end);
+                Node child = node.children.get(label);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(label, child);
+                }
+                node = child;
+                end = dot;
+            }
+            node.section = section;
+        }
+    }
+
+    private static final class Code {
+        private final StringBuilder text = new StringBuilder();
+
+        Code line(String line) {
+            text.append(line).append('\n');
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
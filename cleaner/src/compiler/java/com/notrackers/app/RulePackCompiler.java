@@ -0,0 +1,459 @@
+package com.notrackers.app;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles a text rule pack ({@code trackers.rules}) into the binary form
+ * read by {@link RulePack}.
+ *
+ * <p>Binary layout, big-endian. A string is a u16 byte length followed by
+ * UTF-8 bytes; a list is a u16 count followed by strings.
+ * <pre>
+ * header      magic "NTRP", u16 format, i32 pack version, i64 fingerprint
+ *             (FNV-1a of the pack with this field zeroed), i32 offsets of the
+ *             global, host index, redirector and rewrite sections
+ * global      lists: drop, drop-prefix, drop-wt-prefix, redirect-param
+ * host        per section: lists keep, drop, drop-prefix; string needle and
+ *             list of keep-if-value-contains keys; string prefix and i32
+ *             length of drop-prefix-if-value-longer (empty string if unset)
+ * host index  i32 count, then per name: u8 kind (0 domain, 1 brand),
+ *             string name, i32 offset of its host section
+ * redirectors u16 count, then per rule: string name, lists domains, brands,
+ *             labels, paths, params
+ * rewrites    u16 count, then per rule: string name, lists domains, brands,
+ *             hosts; strings path, set-host, set-path; lists add-param
+ *             (key, template pairs), fragment-param, drop-path-segment,
+ *             drop-param-if-value (key, value pairs); u8 strip-trailing-slash
+ * </pre>
+ * Host sections come before the index so a reader can decode the index
+ * eagerly and each section only when a URL first needs it.
+ */
+public final class RulePackCompiler {
+
+    static final int HEADER_SIZE = 4 + 2 + 4 + 8 + 4 * 4;
+    private static final int FINGERPRINT_OFFSET = 4 + 2 + 4;
+
+    private RulePackCompiler() {
+    }
+
+    /** Usage: {@code RulePackCompiler <trackers.rules> <output.ntrp>} */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: RulePackCompiler <rules> <output>");
+            System.exit(2);
+        }
+        Source source;
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            source = parse(reader);
+        }
+        Path output = Paths.get(args[1]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(output)) {
+            out.write(compile(source));
+        }
+    }
+
+    static Source parse(Reader reader) throws IOException {
+        Source source = new Source();
+        BufferedReader lines = new BufferedReader(reader);
+        Object section = null;
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            int comment = line.indexOf('#');
+            if (comment != -1) {
+                line = line.substring(0, comment);
+            }
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            List<String> args = Arrays.asList(words).subList(1, words.length);
+            if (words[0].startsWith("[")) {
+                section = openSection(source, line.trim(), number);
+            } else if (section == null && words[0].equals("version") && args.size() == 1) {
+                source.version = Integer.parseInt(args.get(0));
+            } else if (section == source.global) {
+                global(source.global, words[0], args, number);
+            } else if (section instanceof HostSection) {
+                host((HostSection) section, words[0], args, number);
+            } else if (section instanceof RedirectorSection) {
+                redirector((RedirectorSection) section, words[0], args, number);
+            } else if (section instanceof RewriteSection) {
+                rewrite((RewriteSection) section, words[0], args, number);
+            } else {
+                throw error(number, "unexpected '" + words[0] + "'");
+            }
+        }
+        for (RewriteSection rewrite : source.rewrites) {
+            try {
+                rewrite.toRule();
+            } catch (IllegalArgumentException e) {
+                throw error(rewrite.line, "rewrite " + rewrite.name + ": " + e.getMessage());
+            }
+        }
+        return source;
+    }
+
+    static byte[] compile(Source source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[HEADER_SIZE]);
+
+        int globalOffset = out.size();
+        writeList(out, source.global.drop);
+        writeList(out, source.global.dropPrefixes);
+        writeList(out, source.global.wtPrefixes);
+        writeList(out, source.global.redirectParams);
+
+        int[] hostOffsets = new int[source.hosts.size()];
+        for (int i = 0; i < hostOffsets.length; i++) {
+            HostSection host = source.hosts.get(i);
+            hostOffsets[i] = out.size();
+            writeList(out, host.keep);
+            writeList(out, host.drop);
+            writeList(out, host.dropPrefixes);
+            writeString(out, host.keepIfValueContains);
+            writeList(out, host.keepIfValueContainsKeys);
+            writeString(out, host.longValuePrefix);
+            out.writeInt(host.longValueLength);
+        }
+
+        int indexOffset = out.size();
+        int names = 0;
+        for (HostSection host : source.hosts) {
+            names += host.names.size();
+        }
+        out.writeInt(names);
+        for (int i = 0; i < hostOffsets.length; i++) {
+            HostSection host = source.hosts.get(i);
+            for (String name : host.names) {
+                out.writeByte(host.brand ? RulePack.KIND_BRAND : RulePack.KIND_DOMAIN);
+                writeString(out, name);
+                out.writeInt(hostOffsets[i]);
+            }
+        }
+
+        int redirectorOffset = out.size();
+        out.writeShort(source.redirectors.size());
+        for (RedirectorSection redirector : source.redirectors) {
+            writeString(out, redirector.name);
+            writeList(out, redirector.domains);
+            writeList(out, redirector.brands);
+            writeList(out, redirector.labels);
+            writeList(out, redirector.paths);
+            writeList(out, redirector.params);
+        }
+
+        int rewriteOffset = out.size();
+        out.writeShort(source.rewrites.size());
+        for (RewriteSection rewrite : source.rewrites) {
+            writeString(out, rewrite.name);
+            writeList(out, rewrite.domains);
+            writeList(out, rewrite.brands);
+            writeList(out, rewrite.hosts);
+            writeString(out, rewrite.path);
+            writeString(out, rewrite.setHost);
+            writeString(out, rewrite.setPath);
+            writeList(out, rewrite.addParams);
+            writeList(out, rewrite.fragmentParams);
+            writeList(out, rewrite.dropPathSegments);
+            writeList(out, rewrite.dropParamsIfValue);
+            out.writeByte(rewrite.stripTrailingSlash ? 1 : 0);
+        }
+        out.flush();
+
+        ByteBuffer packed = ByteBuffer.wrap(bytes.toByteArray());
+        packed.putInt(RulePack.MAGIC)
+              .putShort((short) RulePack.FORMAT)
+              .putInt(source.version)
+              .putLong(0)
+              .putInt(globalOffset)
+              .putInt(indexOffset)
+              .putInt(redirectorOffset)
+              .putInt(rewriteOffset);
+        packed.putLong(FINGERPRINT_OFFSET, fingerprint(packed.array()));
+        return packed.array();
+    }
+
+    // Stored in the header so loading a pack need not read all of it
+    private static long fingerprint(byte[] pack) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : pack) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        // 0 is the bootstrap matcher's, which no pack may match
+        return h != 0 ? h : 1;
+    }
+
+    private static Object openSection(Source source, String header, int number) {
+        if (!header.endsWith("]")) {
+            throw error(number, "unterminated section header");
+        }
+        String[] words = header.substring(1, header.length() - 1).trim().split("\\s+");
+        List<String> names = Arrays.asList(words).subList(1, words.length);
+        switch (words[0]) {
+            case "global":
+                return source.global;
+            case "host":
+            case "brand":
+                if (names.isEmpty()) {
+                    throw error(number, "section needs at least one name");
+                }
+                HostSection host = new HostSection(words[0].equals("brand"), names);
+                source.hosts.add(host);
+                return host;
+            case "redirector":
+                if (names.size() != 1) {
+                    throw error(number, "redirector needs exactly one name");
+                }
+                RedirectorSection redirector = new RedirectorSection(names.get(0));
+                source.redirectors.add(redirector);
+                return redirector;
+            case "rewrite":
+                if (names.size() != 1) {
+                    throw error(number, "rewrite needs exactly one name");
+                }
+                RewriteSection rewrite = new RewriteSection(names.get(0), number);
+                source.rewrites.add(rewrite);
+                return rewrite;
+            default:
+                throw error(number, "unknown section '" + words[0] + "'");
+        }
+    }
+
+    private static void global(GlobalSection global, String directive, List<String> args, int number) {
+        switch (directive) {
+            case "drop":
+                global.drop.addAll(args);
+                break;
+            case "drop-prefix":
+                global.dropPrefixes.addAll(args);
+                break;
+            case "drop-wt-prefix":
+                global.wtPrefixes.addAll(args);
+                break;
+            case "redirect-param":
+                global.redirectParams.addAll(args);
+                break;
+            default:
+                throw error(number, "unknown global directive '" + directive + "'");
+        }
+    }
+
+    private static void host(HostSection host, String directive, List<String> args, int number) {
+        switch (directive) {
+            case "keep":
+                host.keep.addAll(args);
+                break;
+            case "drop":
+                host.drop.addAll(args);
+                break;
+            case "drop-prefix":
+                host.dropPrefixes.addAll(args);
+                break;
+            case "keep-if-value-contains":
+                if (args.size() < 2) {
+                    throw error(number, "usage: keep-if-value-contains <needle> <keys...>");
+                }
+                host.keepIfValueContains = args.get(0);
+                host.keepIfValueContainsKeys.addAll(args.subList(1, args.size()));
+                break;
+            case "drop-prefix-if-value-longer":
+                if (args.size() != 2) {
+                    throw error(number, "usage: drop-prefix-if-value-longer <prefix> <length>");
+                }
+                host.longValuePrefix = args.get(0);
+                host.longValueLength = Integer.parseInt(args.get(1));
+                break;
+            default:
+                throw error(number, "unknown host directive '" + directive + "'");
+        }
+    }
+
+    private static void redirector(RedirectorSection redirector, String directive, List<String> args, int number) {
+        switch (directive) {
+            case "domains":
+                redirector.domains.addAll(args);
+                break;
+            case "brands":
+                redirector.brands.addAll(args);
+                break;
+            case "labels":
+                redirector.labels.addAll(args);
+                break;
+            case "paths":
+                redirector.paths.addAll(args);
+                break;
+            case "params":
+                redirector.params.addAll(args);
+                break;
+            default:
+                throw error(number, "unknown redirector directive '" + directive + "'");
+        }
+    }
+
+    private static void rewrite(RewriteSection rewrite, String directive, List<String> args, int number) {
+        switch (directive) {
+            case "domains":
+                rewrite.domains.addAll(args);
+                break;
+            case "brands":
+                rewrite.brands.addAll(args);
+                break;
+            case "hosts":
+                rewrite.hosts.addAll(args);
+                break;
+            case "path":
+                rewrite.path = single(args, "path <pattern>", number);
+                break;
+            case "set-host":
+                rewrite.setHost = single(args, "set-host <template>", number);
+                break;
+            case "set-path":
+                rewrite.setPath = single(args, "set-path <template>", number);
+                break;
+            case "add-param":
+                if (args.size() != 2) {
+                    throw error(number, "usage: add-param <key> <template>");
+                }
+                rewrite.addParams.addAll(args);
+                break;
+            case "fragment-param":
+                rewrite.fragmentParams.addAll(args);
+                break;
+            case "drop-path-segment":
+                rewrite.dropPathSegments.addAll(args);
+                break;
+            case "drop-param-if-value":
+                if (args.size() != 2) {
+                    throw error(number, "usage: drop-param-if-value <key> <value>");
+                }
+                rewrite.dropParamsIfValue.addAll(args);
+                break;
+            case "strip-trailing-slash":
+                rewrite.stripTrailingSlash = true;
+                break;
+            default:
+                throw error(number, "unknown rewrite directive '" + directive + "'");
+        }
+    }
+
+    private static String single(List<String> args, String usage, int number) {
+        if (args.size() != 1) {
+            throw error(number, "usage: " + usage);
+        }
+        return args.get(0);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeShort(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static IllegalArgumentException error(int line, String message) {
+        return new IllegalArgumentException("line " + line + ": " + message);
+    }
+
+    static final class Source {
+        int version;
+        final GlobalSection global = new GlobalSection();
+        final List<HostSection> hosts = new ArrayList<>();
+        final List<RedirectorSection> redirectors = new ArrayList<>();
+        final List<RewriteSection> rewrites = new ArrayList<>();
+    }
+
+    static final class GlobalSection {
+        final List<String> drop = new ArrayList<>();
+        final List<String> dropPrefixes = new ArrayList<>();
+        final List<String> wtPrefixes = new ArrayList<>();
+        final List<String> redirectParams = new ArrayList<>();
+    }
+
+    static final class HostSection {
+        final boolean brand;
+        final List<String> names;
+        final List<String> keep = new ArrayList<>();
+        final List<String> drop = new ArrayList<>();
+        final List<String> dropPrefixes = new ArrayList<>();
+        final List<String> keepIfValueContainsKeys = new ArrayList<>();
+        String keepIfValueContains = "";
+        String longValuePrefix = "";
+        int longValueLength;
+
+        HostSection(boolean brand, List<String> names) {
+            this.brand = brand;
+            this.names = new ArrayList<>(names);
+        }
+    }
+
+    static final class RedirectorSection {
+        final String name;
+        final List<String> domains = new ArrayList<>();
+        final List<String> brands = new ArrayList<>();
+        final List<String> labels = new ArrayList<>();
+        final List<String> paths = new ArrayList<>();
+        final List<String> params = new ArrayList<>();
+
+        RedirectorSection(String name) {
+            this.name = name;
+        }
+    }
+
+    static final class RewriteSection {
+        final String name;
+        final int line;
+        final List<String> domains = new ArrayList<>();
+        final List<String> brands = new ArrayList<>();
+        final List<String> hosts = new ArrayList<>();
+        final List<String> addParams = new ArrayList<>();
+        final List<String> fragmentParams = new ArrayList<>();
+        final List<String> dropPathSegments = new ArrayList<>();
+        final List<String> dropParamsIfValue = new ArrayList<>();
+        String path = "";
+        String setHost = "";
+        String setPath = "";
+        boolean stripTrailingSlash;
+
+        RewriteSection(String name, int line) {
+            this.name = name;
+            this.line = line;
+        }
+
+        // Validates patterns and templates the same way RulePack will load them
+        Rewrites.Rule toRule() {
+            return new Rewrites.Rule(name, array(domains), array(brands), array(hosts), path,
+                setHost, setPath, array(addParams), array(fragmentParams),
+                array(dropPathSegments), array(dropParamsIfValue), stripTrailingSlash);
+        }
+
+        private static String[] array(List<String> values) {
+            return values.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.notrackers.app;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cleans many URLs at once by splitting the input across a
+ * {@link ForkJoinPool}. Results always come back in input order.
+ */
+public final class BatchCleaner {
+
+    // Below this many URLs a task cleans its range instead of forking
+    private static final int MIN_CHUNK = 64;
+
+    private BatchCleaner() {
+    }
+
+    public static List<String> cleanAll(List<String> urls) {
+        return cleanAll(urls, ForkJoinPool.commonPool(), UrlCleaner.defaultCleaner());
+    }
+
+    public static List<String> cleanAll(List<String> urls, UrlCleaner cleaner) {
+        return cleanAll(urls, ForkJoinPool.commonPool(), cleaner);
+    }
+
+    public static List<String> cleanAll(List<String> urls, ForkJoinPool pool) {
+        return cleanAll(urls, pool, UrlCleaner.defaultCleaner());
+    }
+
+    public static List<String> cleanAll(List<String> urls, ForkJoinPool pool, UrlCleaner cleaner) {
+        String[] input = urls.toArray(new String[0]);
+        String[] output = new String[input.length];
+        if (input.length > 0) {
+            int chunk = Math.max(MIN_CHUNK, input.length / (pool.getParallelism() * 4));
+            pool.invoke(new CleanRange(cleaner, input, output, 0, input.length, chunk));
+        }
+        return Arrays.asList(output);
+    }
+
+    /**
+     * Returns a parallel stream of cleaned URLs. Encounter order follows the
+     * source, so an ordered spliterator yields results in input order.
+     */
+    public static Stream<String> cleanAll(Spliterator<String> urls) {
+        return cleanAll(urls, UrlCleaner.defaultCleaner());
+    }
+
+    public static Stream<String> cleanAll(Spliterator<String> urls, UrlCleaner cleaner) {
+        return StreamSupport.stream(urls, true).map(cleaner::clean);
+    }
+
+    private static final class CleanRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final UrlCleaner cleaner;
+        private final String[] input;
+        private final String[] output;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        CleanRange(UrlCleaner cleaner, String[] input, String[] output, int from, int to, int chunk) {
+            this.cleaner = cleaner;
+            this.input = input;
+            this.output = output;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                for (int i = from; i < to; i++) {
+                    output[i] = cleaner.clean(input[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new CleanRange(cleaner, input, output, from, mid, chunk),
+                      new CleanRange(cleaner, input, output, mid, to, chunk));
+        }
+    }
+}
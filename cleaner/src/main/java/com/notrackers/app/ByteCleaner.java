@@ -0,0 +1,519 @@
+package com.notrackers.app;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Cleans URLs held as UTF-8 bytes without decoding them. The URL is parsed
+ * into offsets, keys are classified against the rule pack's key sets in
+ * place, and every kept range is copied to the output as-is.
+ *
+ * <p>Only URLs whose result is decided by parameter rules alone are cleaned
+ * here. Anything else goes through the full pipeline and is re-encoded:
+ * non-ASCII bytes, escaped keys, unusual layouts, redirectors that may
+ * unwrap, rewrites that may apply, hosts with user overrides, and
+ * value-dependent rules over escaped values. Either way the bytes written
+ * are those of {@link UrlCleaner#clean(String)} on the decoded input.
+ *
+ * <p>{@code clean(String)} itself tries ASCII strings here first, copying them
+ * into the same per-thread scratch. The scratch is shared by every cleaner
+ * on a thread, keeps no reference to the input between calls, and drops
+ * any buffer a long URL grew past 8 KiB.
+ */
+final class ByteCleaner {
+
+    // Resolved hosts, direct-mapped by hash; a collision replaces the entry
+    private static final int HOST_PLANS = 512;
+
+    private static final byte[] ROOT_PATH = {'/'};
+
+    // Scratch buffers grown past this are not kept for the next URL
+    private static final int RETAINED_BYTES = 8192;
+
+    // Per thread rather than per cleaner, as a config swap makes a new one
+    private static final ThreadLocal<Parsed> SCRATCH = new ThreadLocal<Parsed>() {
+        @Override
+        protected Parsed initialValue() {
+            return new Parsed();
+        }
+    };
+
+    private final CleanerConfig config;
+    private final HostPlan[] plans = new HostPlan[HOST_PLANS];
+
+    ByteCleaner(CleanerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Cleans the URL between {@code in}'s position and limit into
+     * {@code out}, returning the number of bytes written. Both positions
+     * advance; if {@code out} has too little room, neither moves and
+     * {@link BufferOverflowException} is thrown. URLs this class cannot
+     * decide go through {@code fallback}'s full pipeline.
+     */
+    int clean(ByteBuffer in, ByteBuffer out, UrlCleaner.Snapshot fallback) {
+        Parsed url = SCRATCH.get();
+        url.load(in);
+        try {
+            byte[] result;
+            // The full pipeline reports to the listener; this path cannot
+            int length = fallback.listener == null ? cleanBytes(url) : -1;
+            if (length >= 0) {
+                result = url.out;
+            } else {
+                String text = new String(url.bytes, url.offset, url.length, StandardCharsets.UTF_8);
+                result = fallback.clean(text, false).getBytes(StandardCharsets.UTF_8);
+                length = result.length;
+            }
+            if (out.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            out.put(result, 0, length);
+            in.position(in.limit());
+            return length;
+        } finally {
+            url.release();
+        }
+    }
+
+    /**
+     * Returns {@code url} cleaned if this class can decide it: {@code url}
+     * itself when nothing changes, else a new string. Returns null if the
+     * URL must go through the full pipeline.
+     */
+    String clean(String url) {
+        Parsed parsed = SCRATCH.get();
+        try {
+            if (!parsed.load(url)) {
+                return null;
+            }
+            int length = cleanBytes(parsed);
+            if (length < 0) {
+                return null;
+            }
+            if (parsed.outEquals(parsed.bytes, 0, parsed.length)) {
+                return url;
+            }
+            return new String(parsed.out, 0, length, StandardCharsets.US_ASCII);
+        } finally {
+            parsed.release();
+        }
+    }
+
+    // Writes the cleaned URL to url.out and returns its length, or -1 if
+    // the URL must go through the String path
+    private int cleanBytes(Parsed url) {
+        byte[] bytes = url.bytes;
+        int start = url.offset;
+        int end = start + url.length;
+        // String.trim(): bytes <= ' ' are ASCII in UTF-8
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            // cleanUrl returns a blank URL untouched
+            return copy(url, url.offset, url.offset + url.length);
+        }
+        int ascii = 0;
+        for (int i = start; i < end; i++) {
+            ascii |= bytes[i];
+        }
+        if (ascii < 0) {
+            return -1;
+        }
+        int schemeEnd = indexOf(bytes, start, end, "://");
+        if (schemeEnd == -1) {
+            // Not a URL; cleanUrl returns it trimmed
+            return copy(url, start, end);
+        }
+        int authority = schemeEnd + 3;
+        int slash = indexOf(bytes, authority, end, '/');
+        int question = indexOf(bytes, authority, end, '?');
+        int hash = indexOf(bytes, authority, end, '#');
+        // UrlCleaner.parseUri splits on the first '/', '?' and '#' wherever
+        // they fall; only the ordinary order is handled here
+        if ((slash != -1 && ((question != -1 && question < slash) || (hash != -1 && hash < slash))) ||
+            (question != -1 && hash != -1 && hash < question)) {
+            return -1;
+        }
+        int authorityEnd = slash != -1 ? slash : question != -1 ? question : hash != -1 ? hash : end;
+        int hostEnd = authority;
+        while (hostEnd < authorityEnd && bytes[hostEnd] != ':') {
+            hostEnd++;
+        }
+        if (hostEnd == authority) {
+            return -1;
+        }
+        if (slash != -1) {
+            url.path = bytes;
+            url.pathFrom = slash;
+            url.pathTo = question != -1 ? question : hash != -1 ? hash : end;
+        } else {
+            url.path = ROOT_PATH;
+            url.pathFrom = 0;
+            url.pathTo = 1;
+        }
+        url.queryFrom = question != -1 ? question + 1 : end;
+        url.queryTo = question == -1 ? end : hash != -1 ? hash : end;
+        url.fragmentFrom = hash != -1 ? hash + 1 : end;
+        url.end = end;
+        if (!url.parseQuery()) {
+            return -1;
+        }
+
+        HostPlan plan = plan(bytes, authority, hostEnd);
+        for (Redirectors.Rule rule : plan.redirectors) {
+            if (rule.mayMatch(url)) {
+                return -1;
+            }
+        }
+        if (plan.override != null) {
+            return -1;
+        }
+        if (plan.rewrites != 0 && config.rewrites().mayApply(plan.rewrites, url)) {
+            return -1;
+        }
+
+        url.ensureOut(end - start + 1);
+        url.outLength = 0;
+        url.write(bytes, start, hostEnd);
+        if (hostEnd + 1 < authorityEnd) {
+            // A bare ':' is dropped with its empty port
+            url.write(bytes, hostEnd, authorityEnd);
+        }
+        url.write(url.path, url.pathFrom, url.pathTo);
+        if (!writeParams(url, plan.rule, '?')) {
+            return -1;
+        }
+        if (url.fragmentFrom < end) {
+            if (indexOf(bytes, url.fragmentFrom, end, '=') == -1) {
+                url.write('#');
+                url.write(bytes, url.fragmentFrom, end);
+            } else {
+                url.queryFrom = url.fragmentFrom;
+                url.queryTo = end;
+                if (!url.parseQuery() || !writeParams(url, plan.rule, '#')) {
+                    return -1;
+                }
+            }
+        }
+        return url.outLength;
+    }
+
+    // Writes the kept pairs of the parsed query, joined by '&' after an
+    // opening separator; false if a pair needs its value decoded
+    private boolean writeParams(Parsed url, HostRules.Rule rule, char separator) {
+        KeyClassifier classifier = config.classifier();
+        byte[] bytes = url.bytes;
+        int[] pairs = url.pairs;
+        boolean first = true;
+        for (int p = 0; p < url.pairCount * 4; p += 4) {
+            int keyFrom = pairs[p];
+            int keyTo = pairs[p + 1];
+            int valueFrom = pairs[p + 2];
+            int pairEnd = pairs[p + 3];
+            int kind = classifier.classify(bytes, keyFrom, keyTo);
+            boolean drop = kind == KeyClassifier.GLOBAL_EXACT ||
+                           kind == KeyClassifier.GLOBAL_PREFIX ||
+                           kind == KeyClassifier.WT_PREFIX;
+            if (!drop) {
+                if (valueFrom != -1 && rule.readsValue(bytes, keyFrom, keyTo) &&
+                    (indexOf(bytes, valueFrom, pairEnd, '%') != -1 || indexOf(bytes, valueFrom, pairEnd, '+') != -1)) {
+                    return false;
+                }
+                drop = rule.shouldDrop(bytes, keyFrom, keyTo, valueFrom, pairEnd) ||
+                       kind == KeyClassifier.REDIRECT_PARAM;
+            }
+            if (!drop) {
+                url.write(first ? separator : '&');
+                url.write(bytes, keyFrom, pairEnd);
+                first = false;
+            }
+        }
+        return true;
+    }
+
+    private HostPlan plan(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + lower(bytes[i]);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (HOST_PLANS - 1);
+        HostPlan plan = plans[slot];
+        if (plan == null || !plan.matches(bytes, from, to)) {
+            // Plans are immutable, so a racing thread sees either one whole
+            // plan or the other
+            plan = new HostPlan(config, new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            plans[slot] = plan;
+        }
+        return plan;
+    }
+
+    private static int copy(Parsed url, int from, int to) {
+        url.ensureOut(to - from);
+        url.outLength = 0;
+        url.write(url.bytes, from, to);
+        return url.outLength;
+    }
+
+    /**
+     * Compares {@code text} with the bytes at {@code offset}, as
+     * {@link String#regionMatches(boolean, int, String, int, int)} would
+     * compare it with their ASCII decoding. The caller checks the bounds.
+     */
+    static boolean regionMatches(byte[] bytes, int offset, String text, boolean ignoreCase) {
+        for (int i = 0; i < text.length(); i++) {
+            char a = (char) bytes[offset + i];
+            char b = text.charAt(i);
+            if (a == b) {
+                continue;
+            }
+            if (!ignoreCase) {
+                return false;
+            }
+            char upperA = Character.toUpperCase(a);
+            char upperB = Character.toUpperCase(b);
+            if (upperA != upperB && Character.toLowerCase(upperA) != Character.toLowerCase(upperB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The first offset in [from, to) where {@code text} occurs, or -1. */
+    static int indexOf(byte[] bytes, int from, int to, String text) {
+        if (text.isEmpty()) {
+            return from <= to ? Math.max(from, 0) : -1;
+        }
+        char first = text.charAt(0);
+        for (int i = indexOf(bytes, from, to - text.length() + 1, first); i != -1;
+             i = indexOf(bytes, i + 1, to - text.length() + 1, first)) {
+            if (regionMatches(bytes, i, text, false)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int indexOf(byte[] bytes, int from, int to, char c) {
+        for (int i = Math.max(from, 0); i < to; i++) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    /** The rules that apply to one host, resolved once and reused. */
+    private static final class HostPlan {
+        private final byte[] host;
+        final HostRules.Rule rule;
+        final Redirectors.Rule[] redirectors;
+        final long rewrites;
+        final CleanerConfig.HostOverride override;
+
+        HostPlan(CleanerConfig config, String host) {
+            // Every host condition is case-insensitive
+            host = host.toLowerCase(Locale.ROOT);
+            this.host = host.getBytes(StandardCharsets.US_ASCII);
+            this.rule = config.hostRules().lookup(host);
+            this.redirectors = config.redirectors().candidates(host);
+            this.rewrites = config.rewrites().hostMatches(host);
+            this.override = config.override(host);
+        }
+
+        boolean matches(byte[] bytes, int from, int to) {
+            if (to - from != host.length) {
+                return false;
+            }
+            for (int i = 0; i < host.length; i++) {
+                if (lower(bytes[from + i]) != host[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One URL as offsets into its bytes, reused per thread. The path is
+     * {@code path[pathFrom, pathTo)}, which is a shared "/" when the URL
+     * has none; the other parts index {@link #bytes}.
+     */
+    static final class Parsed {
+        byte[] bytes;
+        int offset;
+        int length;
+        byte[] path;
+        int pathFrom;
+        int pathTo;
+        int queryFrom;
+        int queryTo;
+        int fragmentFrom;
+        int end;
+        // Per pair: key start, key end, value start or -1, pair end
+        int[] pairs = new int[64];
+        int pairCount;
+        byte[] out = new byte[256];
+        int outLength;
+
+        // Holds the URL when the input buffer has no accessible array
+        private byte[] copy = new byte[256];
+
+        void load(ByteBuffer in) {
+            length = in.remaining();
+            if (in.hasArray()) {
+                bytes = in.array();
+                offset = in.arrayOffset() + in.position();
+            } else {
+                if (copy.length < length) {
+                    copy = new byte[Math.max(length, copy.length * 2)];
+                }
+                in.duplicate().get(copy, 0, length);
+                bytes = copy;
+                offset = 0;
+            }
+        }
+
+        // Splits [queryFrom, queryTo) into pairs as UrlCleaner does, skipping
+        // empty ones; false if a key is escaped
+        boolean parseQuery() {
+            pairCount = 0;
+            int pairStart = queryFrom;
+            int equals = -1;
+            for (int i = queryFrom; i <= queryTo; i++) {
+                byte b = i < queryTo ? bytes[i] : (byte) '&';
+                if (b == '=' && equals == -1) {
+                    equals = i;
+                } else if (b == '&') {
+                    if (i > pairStart) {
+                        if (pairs.length < (pairCount + 1) * 4) {
+                            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                        }
+                        int p = pairCount++ * 4;
+                        pairs[p] = pairStart;
+                        pairs[p + 1] = equals != -1 ? equals : i;
+                        pairs[p + 2] = equals != -1 ? equals + 1 : -1;
+                        pairs[p + 3] = i;
+                    }
+                    pairStart = i + 1;
+                    equals = -1;
+                } else if ((b == '%' || b == '+') && equals == -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Whether a query key equals {@code key}, ignoring case. */
+        boolean hasQueryKey(String key) {
+            for (int p = 0; p < pairCount * 4; p += 4) {
+                if (pairs[p + 1] - pairs[p] == key.length() && regionMatches(bytes, pairs[p], key, true)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Whether the fragment starts with {@code key} followed by {@code next}. */
+        boolean fragmentStartsWith(String key, char next) {
+            return end - fragmentFrom > key.length() && bytes[fragmentFrom + key.length()] == next &&
+                   regionMatches(bytes, fragmentFrom, key, false);
+        }
+
+        /** Whether {@code segment} occurs as a whole '/'-delimited path segment. */
+        boolean pathHasSegment(String segment) {
+            for (int at = indexOf(path, pathFrom, pathTo, segment); at != -1;
+                 at = indexOf(path, at + 1, pathTo, segment)) {
+                int segmentEnd = at + segment.length();
+                if ((at == pathFrom || path[at - 1] == '/') && (segmentEnd == pathTo || path[segmentEnd] == '/')) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Whether {@code slashSegment} ("/name") occurs followed by '/' or the end. */
+        boolean pathHasSegmentAt(String slashSegment) {
+            for (int at = indexOf(path, pathFrom, pathTo, slashSegment); at != -1;
+                 at = indexOf(path, at + 1, pathTo, slashSegment)) {
+                int segmentEnd = at + slashSegment.length();
+                if (segmentEnd == pathTo || path[segmentEnd] == '/') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Copies an ASCII string into the scratch copy; false if it is not ASCII
+        boolean load(String text) {
+            length = text.length();
+            if (copy.length < length) {
+                copy = new byte[Math.max(length, copy.length * 2)];
+            }
+            int ascii = 0;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                ascii |= c;
+                copy[i] = (byte) c;
+            }
+            bytes = copy;
+            offset = 0;
+            return ascii < 0x80;
+        }
+
+        boolean outEquals(byte[] source, int from, int to) {
+            if (outLength != to - from) {
+                return false;
+            }
+            for (int i = 0; i < outLength; i++) {
+                if (out[i] != source[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Forgets the input, which may be the caller's array, and any buffer
+        // grown past RETAINED_BYTES
+        void release() {
+            bytes = null;
+            path = null;
+            if (out.length > RETAINED_BYTES) {
+                out = new byte[256];
+            }
+            if (copy.length > RETAINED_BYTES) {
+                copy = new byte[256];
+            }
+            if (pairs.length * 4 > RETAINED_BYTES) {
+                pairs = new int[64];
+            }
+        }
+
+        void ensureOut(int capacity) {
+            if (out.length < capacity) {
+                out = new byte[Math.max(capacity, out.length * 2)];
+            }
+        }
+
+        void write(byte[] source, int from, int to) {
+            System.arraycopy(source, from, out, outLength, to - from);
+            outLength += to - from;
+        }
+
+        void write(char c) {
+            out[outLength++] = (byte) c;
+        }
+    }
+}
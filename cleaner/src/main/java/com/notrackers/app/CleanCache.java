@@ -0,0 +1,243 @@
+package com.notrackers.app;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache from raw input to cleaned URL. Entries are spread over
+ * independently locked segments, so concurrent callers only contend when
+ * they hash to the same segment. Each segment evicts on its own once its
+ * share of the size or weight budget is exceeded.
+ *
+ * <p>Install with {@link UrlCleaner#setCache(CleanCache)} or the
+ * {@link UrlCleaner} constructor; cleaners run uncached by default. A cache
+ * belongs to one cleaner, which clears it whenever its configuration changes.
+ */
+public final class CleanCache {
+
+    public enum Eviction {
+        /** Evict the entry that was read or written longest ago. */
+        LRU,
+        /** Evict the entry that was inserted first, regardless of reads. */
+        FIFO
+    }
+
+    public interface Weigher {
+        long weigh(String raw, String cleaned);
+    }
+
+    /** Every entry weighs one, so the bound is an entry count. */
+    public static final Weigher ENTRIES = (raw, cleaned) -> 1;
+
+    /** Entries weigh their character count, approximating retained heap. */
+    public static final Weigher CHARS = (raw, cleaned) -> raw.length() + cleaned.length();
+
+    private final Segment[] segments;
+    private final Weigher weigher;
+    // Bumped when the cleaner's configuration changes, so that results
+    // computed under the old one are not stored after the cache is cleared
+    private volatile long epoch;
+
+    private CleanCache(Builder builder) {
+        int count = 1;
+        while (count < builder.concurrencyLevel && count < builder.maximumWeight) {
+            count <<= 1;
+        }
+        long perSegment = Math.max(1, builder.maximumWeight / count);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(perSegment, builder.eviction == Eviction.LRU);
+        }
+        weigher = builder.weigher;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String get(String raw) {
+        Segment segment = segmentFor(raw);
+        synchronized (segment) {
+            CacheEntry entry = segment.get(raw);
+            if (entry == null) {
+                segment.misses++;
+                return null;
+            }
+            segment.hits++;
+            return entry.cleaned;
+        }
+    }
+
+    public void put(String raw, String cleaned) {
+        put(raw, cleaned, epoch);
+    }
+
+    // Stores the entry unless the cache was invalidated since epoch was read
+    void put(String raw, String cleaned, long epoch) {
+        long weight = weigher.weigh(raw, cleaned);
+        Segment segment = segmentFor(raw);
+        synchronized (segment) {
+            if (epoch != this.epoch) {
+                return;
+            }
+            CacheEntry previous = segment.put(raw, new CacheEntry(cleaned, weight));
+            if (previous != null) {
+                segment.weight -= previous.weight;
+            }
+            segment.weight += weight;
+            segment.evictOverflow();
+        }
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    // Clears the cache and turns away puts of results computed before,
+    // returning the new epoch
+    long invalidate() {
+        long next;
+        synchronized (this) {
+            next = epoch + 1;
+            epoch = next;
+        }
+        clear();
+        return next;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long missCount() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long evictionCount() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "CleanCache{size=" + size() + ", hits=" + hitCount() + ", misses=" + missCount()
+            + ", evictions=" + evictionCount() + "}";
+    }
+
+    private Segment segmentFor(String raw) {
+        int h = raw.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class CacheEntry {
+        final String cleaned;
+        final long weight;
+
+        CacheEntry(String cleaned, long weight) {
+            this.cleaned = cleaned;
+            this.weight = weight;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Segment extends LinkedHashMap<String, CacheEntry> {
+        private final long maximumWeight;
+        long weight;
+        long hits;
+        long misses;
+        long evictions;
+
+        Segment(long maximumWeight, boolean accessOrder) {
+            super(16, 0.75f, accessOrder);
+            this.maximumWeight = maximumWeight;
+        }
+
+        void evictOverflow() {
+            Iterator<Map.Entry<String, CacheEntry>> eldest = entrySet().iterator();
+            // Always keep the newest entry, even if it alone exceeds the budget
+            while (weight > maximumWeight && size() > 1 && eldest.hasNext()) {
+                weight -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private long maximumWeight = 10_000;
+        private Weigher weigher = ENTRIES;
+        private Eviction eviction = Eviction.LRU;
+        private int concurrencyLevel = Runtime.getRuntime().availableProcessors() * 4;
+
+        private Builder() {
+        }
+
+        public Builder maximumSize(long entries) {
+            return maximumWeight(entries, ENTRIES);
+        }
+
+        public Builder maximumWeight(long weight, Weigher weigher) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight must be positive: " + weight);
+            }
+            this.maximumWeight = weight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder eviction(Eviction eviction) {
+            this.eviction = eviction;
+            return this;
+        }
+
+        public Builder concurrencyLevel(int segments) {
+            if (segments <= 0) {
+                throw new IllegalArgumentException("segments must be positive: " + segments);
+            }
+            this.concurrencyLevel = segments;
+            return this;
+        }
+
+        public CleanCache build() {
+            return new CleanCache(this);
+        }
+    }
+}
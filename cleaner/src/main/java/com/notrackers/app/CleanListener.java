@@ -0,0 +1,41 @@
+package com.notrackers.app;
+
+/**
+ * Observes a {@link UrlCleaner} it was given to, or the default cleaner
+ * while installed with {@link UrlCleaner#setListener}. Callbacks run on the cleaning thread,
+ * possibly on many threads at once, so implementations must be
+ * thread-safe and cheap. {@link CleanMetrics} is the standard one.
+ *
+ * <p>With no listener installed the cleaner skips timing entirely; the
+ * only cost is a null check per stage.
+ */
+public interface CleanListener {
+
+    enum Stage {
+        /** Redirector lookups, across all hops. */
+        UNWRAP,
+        /** {@code parseUri}, once per hop. */
+        PARSE,
+        NORMALIZE,
+        /** Host rule lookup and query and fragment parameter cleaning. */
+        CLEAN_PARAMS,
+        BUILD
+    }
+
+    void onStage(Stage stage, long nanos);
+
+    /** Called once per URL with the number of redirectors unwrapped. */
+    void onUnwrapped(int depth);
+
+    /** Called once per hop with the name of the redirector rule that matched. */
+    void onRedirector(String rule);
+
+    /**
+     * Called once per URL with the host rule section that applied, named by
+     * its first domain or brand, or {@code "other"} if none did.
+     */
+    void onHostFamily(String family);
+
+    /** Called for every parameter dropped, with its decoded key. */
+    void onDroppedKey(String key);
+}
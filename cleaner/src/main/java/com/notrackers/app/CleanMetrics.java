@@ -0,0 +1,141 @@
+package com.notrackers.app;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CleanListener} that counts into {@link LongAdder}s, so
+ * concurrent cleaners rarely contend. Read it as a flat map with
+ * {@link #snapshot()}, or as text with {@link #dump}.
+ *
+ * <p>Dropped keys are counted individually up to {@link #MAX_KEYS}
+ * distinct keys; after that new keys are counted under {@code "(other)"},
+ * so hostile input cannot grow the table without bound.
+ */
+public final class CleanMetrics implements CleanListener {
+
+    static final int MAX_KEYS = 1024;
+
+    private static final String OTHER_KEY = "(other)";
+
+    private final LongAdder[] stageCounts = adders(Stage.values().length);
+    private final LongAdder[] stageNanos = adders(Stage.values().length);
+    // Index i counts URLs unwrapped i times
+    private final LongAdder[] depths = adders(UrlCleaner.MAX_UNWRAP_DEPTH + 1);
+    private final ConcurrentHashMap<String, LongAdder> redirectors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> hostFamilies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> droppedKeys = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStage(Stage stage, long nanos) {
+        stageCounts[stage.ordinal()].increment();
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void onUnwrapped(int depth) {
+        depths[Math.min(depth, depths.length - 1)].increment();
+    }
+
+    @Override
+    public void onRedirector(String rule) {
+        counter(redirectors, rule).increment();
+    }
+
+    @Override
+    public void onHostFamily(String family) {
+        counter(hostFamilies, family).increment();
+    }
+
+    @Override
+    public void onDroppedKey(String key) {
+        // Keys are matched case-insensitively, so count them that way
+        key = key.toLowerCase(Locale.ROOT);
+        LongAdder count = droppedKeys.get(key);
+        if (count == null) {
+            count = counter(droppedKeys, droppedKeys.size() < MAX_KEYS ? key : OTHER_KEY);
+        }
+        count.increment();
+    }
+
+    /**
+     * Returns every counter under a dotted name: {@code stage.<stage>.count}
+     * and {@code .nanos}, {@code unwrap.depth.<n>}, {@code redirector.<rule>},
+     * {@code host.<family>} and {@code dropped.<key>}, sorted by name.
+     * Counters are read one at a time, so a snapshot taken under load is
+     * not an atomic cut.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Stage stage : Stage.values()) {
+            String name = "stage." + stage.name().toLowerCase(Locale.ROOT);
+            snapshot.put(name + ".count", stageCounts[stage.ordinal()].sum());
+            snapshot.put(name + ".nanos", stageNanos[stage.ordinal()].sum());
+        }
+        for (int i = 0; i < depths.length; i++) {
+            snapshot.put("unwrap.depth." + i, depths[i].sum());
+        }
+        copy("redirector.", redirectors, snapshot);
+        copy("host.", hostFamilies, snapshot);
+        copy("dropped.", droppedKeys, snapshot);
+        return snapshot;
+    }
+
+    /** Writes the snapshot as text, one counter per line, with mean stage times. */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("UrlCleaner metrics:");
+        for (Stage stage : Stage.values()) {
+            long count = stageCounts[stage.ordinal()].sum();
+            long nanos = stageNanos[stage.ordinal()].sum();
+            writer.printf("%s  stage %-12s %10d calls %10d ns/call%n", prefix,
+                stage.name().toLowerCase(Locale.ROOT), count, count == 0 ? 0 : nanos / count);
+        }
+        for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+            if (!entry.getKey().startsWith("stage.")) {
+                writer.printf("%s  %s %d%n", prefix, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public void reset() {
+        for (LongAdder adder : stageCounts) {
+            adder.reset();
+        }
+        for (LongAdder adder : stageNanos) {
+            adder.reset();
+        }
+        for (LongAdder adder : depths) {
+            adder.reset();
+        }
+        redirectors.clear();
+        hostFamilies.clear();
+        droppedKeys.clear();
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String name) {
+        LongAdder count = counters.get(name);
+        if (count == null) {
+            count = counters.computeIfAbsent(name, k -> new LongAdder());
+        }
+        return count;
+    }
+
+    private static void copy(String prefix, Map<String, LongAdder> counters, Map<String, Long> into) {
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            into.put(prefix + entry.getKey(), entry.getValue().sum());
+        }
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
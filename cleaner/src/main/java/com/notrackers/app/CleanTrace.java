@@ -0,0 +1,191 @@
+package com.notrackers.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one clean did and which rule did it: each redirector unwrapped,
+ * each rewrite that changed the URL and each parameter dropped, in the
+ * order they happened. Made by {@link UrlCleaner#explain}; ordinary
+ * cleans never build one.
+ */
+public final class CleanTrace {
+
+    public enum Kind {
+        /** A redirector rule unwrapped the URL; the value is the destination. */
+        UNWRAP,
+        /** A rewrite rule changed the URL; the value is the URL after it. */
+        REWRITE,
+        /** A parameter was removed; the value is its decoded key. */
+        DROP
+    }
+
+    /** Why a parameter was dropped. */
+    public enum Reason {
+        GLOBAL_EXACT("global exact"),
+        GLOBAL_PREFIX("global prefix"),
+        WT_PREFIX("wt. prefix"),
+        /** A host rule section, named by its family. */
+        HOST("host"),
+        REDIRECT_PARAM("redirect param"),
+        /** A key the user drops on this host. */
+        OVERRIDE("user override");
+
+        private final String label;
+
+        Reason(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final class Step {
+        private final Kind kind;
+        private final String rule;
+        private final String value;
+
+        Step(Kind kind, String rule, String value) {
+            this.kind = kind;
+            this.rule = rule;
+            this.value = value;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        /**
+         * The rule that acted: a redirector or rewrite name, or for a drop
+         * its {@link Reason}, with the family for a host rule.
+         */
+        public String rule() {
+            return rule;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case UNWRAP:
+                    return "unwrap " + rule + " -> " + value;
+                case REWRITE:
+                    return "rewrite " + rule + " -> " + value;
+                default:
+                    return "drop " + value + " (" + rule + ")";
+            }
+        }
+    }
+
+    private final String input;
+    private final String output;
+    private final String hostFamily;
+    private final List<Step> steps;
+
+    private CleanTrace(String input, String output, String hostFamily, List<Step> steps) {
+        this.input = input;
+        this.output = output;
+        this.hostFamily = hostFamily;
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    public String input() {
+        return input;
+    }
+
+    /** The cleaned URL, the same as {@link UrlCleaner#clean} returns. */
+    public String output() {
+        return output;
+    }
+
+    /**
+     * The host rule section that applied to the final URL, {@code "other"}
+     * if none did, or null if the URL was never cleaned as components.
+     */
+    public String hostFamily() {
+        return hostFamily;
+    }
+
+    public List<Step> steps() {
+        return steps;
+    }
+
+    /** The trace as plain text, one step per line, as sent in a report. */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("in:  ").append(input).append('\n');
+        for (Step step : steps) {
+            text.append("  ").append(step).append('\n');
+        }
+        if (hostFamily != null) {
+            text.append("  host rules: ").append(hostFamily).append('\n');
+        }
+        text.append("out: ").append(output);
+        return text.toString();
+    }
+
+    /**
+     * Builds a trace while riding the listener slot through the pipeline,
+     * so cleans without a listener pay nothing for it. The pipeline hands
+     * it the details a plain listener does not get.
+     */
+    static final class Recorder implements CleanListener {
+        private final String input;
+        private final List<Step> steps = new ArrayList<>();
+        private String redirector;
+        private String hostFamily;
+
+        Recorder(String input) {
+            this.input = input;
+        }
+
+        /** The last matched redirector took the URL to {@code destination}. */
+        void onUnwrap(String destination) {
+            steps.add(new Step(Kind.UNWRAP, redirector, destination));
+        }
+
+        void onRewrite(String rule, String url) {
+            steps.add(new Step(Kind.REWRITE, rule, url));
+        }
+
+        void onDropped(String key, Reason reason, String family) {
+            String rule = reason == Reason.HOST ? reason + " " + family : reason.toString();
+            steps.add(new Step(Kind.DROP, rule, key));
+        }
+
+        @Override
+        public void onStage(Stage stage, long nanos) {
+        }
+
+        @Override
+        public void onUnwrapped(int depth) {
+        }
+
+        @Override
+        public void onRedirector(String rule) {
+            redirector = rule;
+        }
+
+        @Override
+        public void onHostFamily(String family) {
+            hostFamily = family;
+        }
+
+        @Override
+        public void onDroppedKey(String key) {
+            steps.add(new Step(Kind.DROP, "unknown", key));
+        }
+
+        CleanTrace finish(String output) {
+            return new CleanTrace(input, output, hostFamily, steps);
+        }
+    }
+}
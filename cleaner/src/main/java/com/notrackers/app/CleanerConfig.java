@@ -0,0 +1,240 @@
+package com.notrackers.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything a {@link UrlCleaner} cleans with: a {@link RulePack} plus
+ * user overrides, compiled once when built. Immutable, so a cleaner can
+ * swap one in atomically while cleans in flight finish on the old one.
+ *
+ * <p>Overrides apply to a domain and its subdomains, where a subdomain's own
+ * overrides take precedence over its parent's. A kept key survives
+ * every rule, global ones included; a dropped key is removed as if it were
+ * a tracker. Extra redirectors are tried after the pack's own, and replace
+ * a pack redirector registered for the same domain.
+ */
+public final class CleanerConfig {
+
+    private final RulePack pack;
+    // As given to the builder, so the config can be rebuilt over another pack
+    private final Map<String, Set<String>> keep;
+    private final Map<String, Set<String>> drop;
+    private final List<Redirectors.Rule> extraRedirectors;
+
+    private final HostTrie<HostOverride> overrides = new HostTrie<>();
+    private final boolean hasOverrides;
+    private final Redirectors redirectors;
+    private final long overridesFingerprint;
+
+    private CleanerConfig(Builder builder) {
+        pack = builder.pack;
+        keep = copy(builder.keep);
+        drop = copy(builder.drop);
+        extraRedirectors = Collections.unmodifiableList(new ArrayList<>(builder.redirectors));
+
+        Set<String> domains = new LinkedHashSet<>(keep.keySet());
+        domains.addAll(drop.keySet());
+        for (String domain : domains) {
+            for (String key : keys(keep, domain)) {
+                if (keys(drop, domain).contains(key)) {
+                    throw new IllegalArgumentException(key + " is both kept and dropped on " + domain);
+                }
+            }
+            // A host gets its parent domains' overrides too, the nearest
+            // domain deciding a key both name
+            Set<String> kept = new LinkedHashSet<>();
+            Set<String> dropped = new LinkedHashSet<>();
+            List<String> suffixes = new ArrayList<>();
+            for (int start = 0; start != 0 || suffixes.isEmpty(); start = domain.indexOf('.', start) + 1) {
+                suffixes.add(0, domain.substring(start));
+            }
+            for (String suffix : suffixes) {
+                kept.addAll(keys(keep, suffix));
+                dropped.removeAll(keys(keep, suffix));
+                dropped.addAll(keys(drop, suffix));
+                kept.removeAll(keys(drop, suffix));
+            }
+            overrides.put(domain, new HostOverride(
+                KeySet.of(kept.toArray(new String[0])), KeySet.of(dropped.toArray(new String[0]))));
+        }
+        hasOverrides = !domains.isEmpty();
+        redirectors = extraRedirectors.isEmpty() ? pack.redirectors() : pack.redirectors().with(extraRedirectors);
+        overridesFingerprint = FingerprintSet.fingerprint(keep + "|" + drop + "|" + extraRedirectors);
+    }
+
+    /** A configuration of {@code pack} alone. */
+    public static CleanerConfig of(RulePack pack) {
+        return builder(pack).build();
+    }
+
+    public static Builder builder(RulePack pack) {
+        return new Builder(pack);
+    }
+
+    /** A builder holding this configuration's pack and overrides. */
+    public Builder toBuilder() {
+        Builder builder = new Builder(pack);
+        for (Map.Entry<String, Set<String>> entry : keep.entrySet()) {
+            builder.keep.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        for (Map.Entry<String, Set<String>> entry : drop.entrySet()) {
+            builder.drop.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        builder.redirectors.addAll(extraRedirectors);
+        return builder;
+    }
+
+    /** This configuration's overrides over another pack, such as an update. */
+    public CleanerConfig withRulePack(RulePack pack) {
+        return toBuilder().rulePack(pack).build();
+    }
+
+    public RulePack rulePack() {
+        return pack;
+    }
+
+    /**
+     * A 64-bit fingerprint of the pack and overrides: equal configurations
+     * clean alike, so a persistent cache keys results on it.
+     */
+    long fingerprint() {
+        return pack.fingerprint() * 31 + overridesFingerprint;
+    }
+
+    KeyClassifier classifier() {
+        return pack.classifier();
+    }
+
+    HostRules hostRules() {
+        return pack.hostRules();
+    }
+
+    Redirectors redirectors() {
+        return redirectors;
+    }
+
+    Rewrites rewrites() {
+        return pack.rewrites();
+    }
+
+    /** The overrides for {@code host}, or null if it has none. */
+    HostOverride override(String host) {
+        return hasOverrides && host != null ? overrides.lookup(host) : null;
+    }
+
+    private static Set<String> keys(Map<String, Set<String>> overrides, String domain) {
+        Set<String> keys = overrides.get(domain);
+        return keys != null ? keys : Collections.<String>emptySet();
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> keys) {
+        Map<String, Set<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : keys.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /** The keys a user keeps and drops on one domain. */
+    static final class HostOverride {
+        private final KeySet keep;
+        private final KeySet drop;
+
+        HostOverride(KeySet keep, KeySet drop) {
+            this.keep = keep;
+            this.drop = drop;
+        }
+
+        boolean keeps(UrlCleaner.Param param) {
+            return keep.contains(param.keyText(), param.keyFrom(), param.keyTo());
+        }
+
+        boolean drops(UrlCleaner.Param param) {
+            return drop.contains(param.keyText(), param.keyFrom(), param.keyTo());
+        }
+    }
+
+    public static final class Builder {
+        private RulePack pack;
+        private final Map<String, Set<String>> keep = new LinkedHashMap<>();
+        private final Map<String, Set<String>> drop = new LinkedHashMap<>();
+        private final List<Redirectors.Rule> redirectors = new ArrayList<>();
+
+        private Builder(RulePack pack) {
+            rulePack(pack);
+        }
+
+        public Builder rulePack(RulePack pack) {
+            if (pack == null) {
+                throw new IllegalArgumentException("pack == null");
+            }
+            this.pack = pack;
+            return this;
+        }
+
+        /** Keeps {@code keys} on {@code domain} and its subdomains, whatever the rules say. */
+        public Builder keep(String domain, String... keys) {
+            add(keep, domain, keys);
+            return this;
+        }
+
+        /** Drops {@code keys} on {@code domain} and its subdomains. */
+        public Builder drop(String domain, String... keys) {
+            add(drop, domain, keys);
+            return this;
+        }
+
+        /**
+         * Unwraps links on {@code domain} and its subdomains whose first
+         * http(s) URL among {@code params} is the destination.
+         */
+        public Builder redirector(String domain, String... params) {
+            String name = normalizeDomain(domain);
+            if (params.length == 0) {
+                throw new IllegalArgumentException("redirector " + name + " has no parameters");
+            }
+            for (String param : params) {
+                checkKey(param);
+            }
+            redirectors.add(new Redirectors.Rule(name, new String[] {name}, new String[0], new String[0],
+                new String[0], params.clone()));
+            return this;
+        }
+
+        public CleanerConfig build() {
+            return new CleanerConfig(this);
+        }
+
+        private static void add(Map<String, Set<String>> overrides, String domain, String[] keys) {
+            Set<String> set = overrides.get(normalizeDomain(domain));
+            if (set == null) {
+                set = new LinkedHashSet<>();
+                overrides.put(normalizeDomain(domain), set);
+            }
+            for (String key : keys) {
+                checkKey(key);
+                set.add(key.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        private static String normalizeDomain(String domain) {
+            if (domain == null || domain.isEmpty() || domain.startsWith(".") || domain.endsWith(".")) {
+                throw new IllegalArgumentException("invalid domain: " + domain);
+            }
+            return domain.toLowerCase(Locale.ROOT);
+        }
+
+        private static void checkKey(String key) {
+            if (key == null || key.isEmpty()) {
+                throw new IllegalArgumentException("empty parameter key");
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.notrackers.app;
+
+import java.util.Arrays;
+
+/**
+ * A set of 64-bit fingerprints in a single open-addressed {@code long[]},
+ * eight bytes per slot and no per-entry objects. The table either grows
+ * as needed or is allocated once to a fixed memory budget.
+ *
+ * <p>Two different strings share a {@link #fingerprint} with probability
+ * about 2<sup>-64</sup>, so across a billion entries the chance of any
+ * false duplicate is a few percent; callers that cannot accept that should
+ * keep the strings. Not thread-safe.
+ */
+public final class FingerprintSet {
+
+    // Stands in for fingerprint 0, which marks an empty slot
+    private static final long ZERO_SUBSTITUTE = 0x9E3779B97F4A7C15L;
+
+    // Java arrays top out just below 2^31 slots
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final boolean growable;
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /** A set presized for {@code expectedSize} entries that grows past that. */
+    public FingerprintSet(int expectedSize) {
+        this(capacityFor(expectedSize), true);
+    }
+
+    private FingerprintSet(int capacity, boolean growable) {
+        this.growable = growable;
+        allocate(capacity);
+    }
+
+    /**
+     * A set that never grows, using at most {@code bytes} of table. It holds
+     * up to 3/4 of {@code bytes / 8} entries, after which {@link #add}
+     * throws {@link IllegalStateException}.
+     */
+    public static FingerprintSet withMemoryBudget(long bytes) {
+        long slots = Math.min(bytes / 8, MAX_CAPACITY);
+        if (slots < 2) {
+            throw new IllegalArgumentException("budget too small: " + bytes);
+        }
+        return new FingerprintSet(Integer.highestOneBit((int) slots), false);
+    }
+
+    /**
+     * A 64-bit fingerprint of {@code text}: FNV-1a over its chars, then a
+     * MurmurHash3 finalizer so the low bits are well mixed for probing.
+     */
+    public static long fingerprint(CharSequence text) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Adds a fingerprint; returns false if it was already present. */
+    public boolean add(long fingerprint) {
+        if (fingerprint == 0) {
+            fingerprint = ZERO_SUBSTITUTE;
+        }
+        int slot = (int) fingerprint & mask;
+        while (true) {
+            long existing = table[slot];
+            if (existing == fingerprint) {
+                return false;
+            }
+            if (existing == 0) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == resizeAt) {
+            if (!growable || table.length == MAX_CAPACITY) {
+                throw new IllegalStateException("FingerprintSet full at " + size + " entries");
+            }
+            rehash(table.length << 1);
+            return add(fingerprint);
+        }
+        table[slot] = fingerprint;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long fingerprint) {
+        if (fingerprint == 0) {
+            fingerprint = ZERO_SUBSTITUTE;
+        }
+        for (int slot = (int) fingerprint & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (table[slot] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Bytes held by the table. */
+    public long memoryBytes() {
+        return (long) table.length * 8;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        // Linear probing stays short below 3/4 full
+        resizeAt = capacity - (capacity >>> 2);
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        for (long fingerprint : old) {
+            if (fingerprint != 0) {
+                int slot = (int) fingerprint & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = fingerprint;
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize < 0: " + expectedSize);
+        }
+        long needed = Math.max(16, (long) expectedSize * 4 / 3 + 1);
+        return needed >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit((int) needed - 1) << 1;
+    }
+}
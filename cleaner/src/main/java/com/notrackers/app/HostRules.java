@@ -0,0 +1,157 @@
+package com.notrackers.app;
+
+import java.util.Map;
+
+/**
+ * Per-host parameter rules from a {@link RulePack}, indexed in a
+ * {@link HostTrie}, or dispatched by {@link GeneratedMatcher} for the
+ * bundled pack. A host is resolved to its {@link Rule} once per URL and
+ * every parameter is then checked against that rule without further
+ * allocation.
+ */
+final class HostRules {
+    
+    static final Rule NONE = new Rule("other", KeySet.EMPTY, KeySet.EMPTY, KeySet.EMPTY, 
+        null, KeySet.EMPTY, null, 0);
+    
+    private final HostTrie<Section> byDomain;
+    
+    // Brands whose rules apply under any TLD (amazon.de, pinterest.co.uk, ...)
+    private final String[] brands;
+    private final Section[] brandSections;
+    // Every section in rules order, as GeneratedMatcher numbers them; null
+    // unless this is the bundled pack
+    private final Section[] generated;
+    
+    HostRules(HostTrie<Section> byDomain, Map<String, Section> byBrand, Section[] generated) {
+        this.byDomain = byDomain;
+        this.brands = byBrand.keySet().toArray(new String[0]);
+        this.brandSections = byBrand.values().toArray(new Section[0]);
+        this.generated = generated;
+    }
+    
+    /**
+     * Resolves the rule for a host: the longest matching registered domain,
+     * else a brand matching the registrable label, else {@link #NONE}.
+     */
+    Rule lookup(String host) {
+        if (host == null || host.isEmpty()) {
+            return NONE;
+        }
+        if (generated != null) {
+            int index = GeneratedMatcher.hostSection(host);
+            return index >= 0 ? generated[index].rule() : NONE;
+        }
+        Section section = byDomain.lookup(host);
+        if (section != null) {
+            return section.rule();
+        }
+        long registrable = brands.length > 0 ? PublicSuffixes.registrableLabel(host) : -1;
+        for (int i = 0; i < brands.length; i++) {
+            if (PublicSuffixes.isRegistrableLabel(host, registrable, brands[i])) {
+                return brandSections[i].rule();
+            }
+        }
+        return NONE;
+    }
+    
+    /** A host section of a rule pack, decoded on first use. */
+    static final class Section {
+        private final RulePack pack;
+        private final int offset;
+        private final String name;
+        private volatile Rule rule;
+        
+        Section(RulePack pack, int offset, String name) {
+            this.pack = pack;
+            this.offset = offset;
+            this.name = name;
+        }
+        
+        Rule rule() {
+            Rule decoded = rule;
+            if (decoded == null) {
+                // Decoding is idempotent, so racing threads may both decode
+                decoded = pack.decodeHostSection(offset, name);
+                rule = decoded;
+            }
+            return decoded;
+        }
+    }
+    
+    static final class Rule {
+        // The section's first domain or brand, for metrics
+        final String family;
+        private final KeySet keep;
+        private final KeySet drop;
+        private final KeySet dropPrefixes;
+        private final String keepIfValueContains;
+        private final KeySet keepIfValueContainsKeys;
+        private final String longValuePrefix;
+        private final int longValueLength;
+        
+        Rule(String family, KeySet keep, KeySet drop, KeySet dropPrefixes, 
+             String keepIfValueContains, KeySet keepIfValueContainsKeys, 
+             String longValuePrefix, int longValueLength) {
+            this.family = family;
+            this.keep = keep;
+            this.drop = drop;
+            this.dropPrefixes = dropPrefixes;
+            this.keepIfValueContains = keepIfValueContains;
+            this.keepIfValueContainsKeys = keepIfValueContainsKeys;
+            this.longValuePrefix = longValuePrefix;
+            this.longValueLength = longValueLength;
+        }
+        
+        boolean shouldDrop(UrlCleaner.Param param) {
+            String key = param.keyText();
+            int from = param.keyFrom();
+            int to = param.keyTo();
+            if (keepIfValueContains != null && keepIfValueContainsKeys.contains(key, from, to) && 
+                param.value().contains(keepIfValueContains)) {
+                return false;
+            }
+            if (keep.contains(key, from, to)) {
+                return false;
+            }
+            if (drop.contains(key, from, to) || dropPrefixes.containsPrefixOf(key, from, to)) {
+                return true;
+            }
+            return longValuePrefix != null && to - from >= longValuePrefix.length() && 
+                   key.regionMatches(true, from, longValuePrefix, 0, longValuePrefix.length()) && 
+                   param.value().length() > longValueLength;
+        }
+        
+        /**
+         * Returns true if the decision for this key depends on the value, so
+         * {@link #shouldDrop(byte[], int, int, int, int)} needs it unescaped.
+         */
+        boolean readsValue(byte[] url, int keyFrom, int keyTo) {
+            return (keepIfValueContains != null && keepIfValueContainsKeys.contains(url, keyFrom, keyTo)) ||
+                   (longValuePrefix != null && keyTo - keyFrom >= longValuePrefix.length() &&
+                    ByteCleaner.regionMatches(url, keyFrom, longValuePrefix, true));
+        }
+        
+        /**
+         * As {@link #shouldDrop(UrlCleaner.Param)}, for a parameter of ASCII
+         * bytes whose key has no escapes. {@code valueFrom} is -1 if there
+         * is no '='.
+         */
+        boolean shouldDrop(byte[] url, int keyFrom, int keyTo, int valueFrom, int end) {
+            int valueLength = valueFrom != -1 ? end - valueFrom : 0;
+            if (keepIfValueContains != null && keepIfValueContainsKeys.contains(url, keyFrom, keyTo) && 
+                ByteCleaner.indexOf(url, valueFrom, valueFrom + valueLength, keepIfValueContains) != -1) {
+                return false;
+            }
+            if (keep.contains(url, keyFrom, keyTo)) {
+                return false;
+            }
+            if (drop.contains(url, keyFrom, keyTo) || dropPrefixes.containsPrefixOf(url, keyFrom, keyTo)) {
+                return true;
+            }
+            return longValuePrefix != null && keyTo - keyFrom >= longValuePrefix.length() && 
+                   ByteCleaner.regionMatches(url, keyFrom, longValuePrefix, true) && 
+                   valueLength > longValueLength;
+        }
+    }
+}
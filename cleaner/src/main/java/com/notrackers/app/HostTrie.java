@@ -0,0 +1,81 @@
+package com.notrackers.app;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Maps domains to values by walking host labels from right to left, so a
+ * lookup matches on label boundaries and costs one step per label.
+ */
+final class HostTrie<V> {
+    
+    private final Node<V> root = new Node<>(null);
+    
+    void put(String domain, V value) {
+        Node<V> node = root;
+        int end = domain.length();
+        while (end > 0) {
+            int dot = domain.lastIndexOf('.', end - 1);
+            node = node.childOrCreate(domain.substring(dot + 1, end).toLowerCase(Locale.ROOT));
+            end = dot;
+        }
+        node.value = value;
+    }
+    
+    /**
+     * Returns the value bound to the longest registered suffix of {@code host},
+     * or {@code null}. Labels are compared case-insensitively in place.
+     */
+    V lookup(String host) {
+        if (host == null) {
+            return null;
+        }
+        Node<V> node = root;
+        V best = null;
+        int end = host.length();
+        while (end > 0) {
+            int dot = host.lastIndexOf('.', end - 1);
+            node = node.child(host, dot + 1, end - dot - 1);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                best = node.value;
+            }
+            end = dot;
+        }
+        return best;
+    }
+    
+    private static final class Node<V> {
+        final String label;
+        V value;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<V>[] children = new Node[0];
+        
+        Node(String label) {
+            this.label = label;
+        }
+        
+        Node<V> child(String host, int offset, int length) {
+            for (Node<V> child : children) {
+                if (child.label.length() == length && 
+                    host.regionMatches(true, offset, child.label, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+        
+        Node<V> childOrCreate(String label) {
+            Node<V> existing = child(label, 0, label.length());
+            if (existing != null) {
+                return existing;
+            }
+            Node<V> created = new Node<>(label);
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = created;
+            return created;
+        }
+    }
+}
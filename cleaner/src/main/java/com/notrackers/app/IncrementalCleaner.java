@@ -0,0 +1,168 @@
+package com.notrackers.app;
+
+import java.util.ArrayList;
+
+/**
+ * Cleans successive edits of one URL, such as the contents of a text field
+ * as the user types, reusing what the previous call worked out wherever the
+ * edit cannot have changed it. Results are those of {@link UrlCleaner#clean(String)}
+ * on the cleaner given, the default one unless another is.
+ *
+ * <p>While the part before the query and fragment is unchanged, its parse
+ * and the redirectors for its host are reused, and so is the unwrapped
+ * destination while the query is unchanged too. A destination is cleaned
+ * once however often it recurs, so editing the fragment or an unrelated
+ * parameter of a redirect link does not re-clean the link it wraps.
+ *
+ * <p>Calls follow the cleaner's configuration as it is replaced, but bypass
+ * its cache and listener. Not thread-safe.
+ */
+public final class IncrementalCleaner {
+
+    private final UrlCleaner cleaner;
+    private CleanerConfig config;
+    private String input;
+    private String result;
+
+    // The previous input's head, the part before its first '?' or '#', or
+    // -1 if the head could not be parsed on its own
+    private int headLength = -1;
+    private UrlCleaner.UriComponents head;
+    private Redirectors.Rule[] redirectors;
+    // The previous input's query, without the '?', or -1 if it had none,
+    // and the destination it unwraps to
+    private int queryFrom = -1;
+    private int queryTo = -1;
+    private boolean destinationKnown;
+    private String destination;
+
+    private String unwrappedFrom;
+    private String unwrapped;
+
+    public IncrementalCleaner() {
+        this(UrlCleaner.defaultCleaner());
+    }
+
+    public IncrementalCleaner(UrlCleaner cleaner) {
+        if (cleaner == null) {
+            throw new IllegalArgumentException("cleaner == null");
+        }
+        this.cleaner = cleaner;
+    }
+
+    /** Returns {@code url} cleaned. */
+    public String clean(String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return url;
+        }
+        String current = url.trim();
+        CleanerConfig rules = cleaner.config();
+        if (rules != config) {
+            config = rules;
+            input = null;
+            headLength = -1;
+            unwrappedFrom = null;
+        } else if (current.equals(input)) {
+            return result;
+        }
+        String cleaned = cleanEdit(current, rules);
+        input = current;
+        result = cleaned;
+        return cleaned;
+    }
+
+    private String cleanEdit(String current, CleanerConfig rules) {
+        int tail = headEnd(current);
+        boolean sameHead = tail == headLength && queryFirst(current, tail) &&
+            current.regionMatches(0, input, 0, tail);
+        if (!sameHead) {
+            headLength = -1;
+            if (queryFirst(current, tail) && headParsesAlone(current, tail)) {
+                head = UrlCleaner.parseUri(current.substring(0, tail));
+                if (head != null) {
+                    headLength = tail;
+                    redirectors = rules.redirectors().candidates(head.host);
+                }
+            }
+        }
+
+        UrlCleaner.UriComponents components;
+        int from = -1;
+        int to = -1;
+        if (headLength == -1) {
+            components = UrlCleaner.parseUri(current);
+            if (components == null) {
+                return current;
+            }
+        } else {
+            components = new UrlCleaner.UriComponents();
+            components.scheme = head.scheme;
+            components.host = head.host;
+            components.port = head.port;
+            components.path = head.path;
+            int fragment = current.indexOf('#', tail);
+            if (tail < current.length() && current.charAt(tail) == '?') {
+                from = tail + 1;
+                to = fragment != -1 ? fragment : current.length();
+                components.queryParams = UrlCleaner.parseQueryString(current, from, to);
+            } else {
+                components.queryParams = new ArrayList<>();
+            }
+            if (fragment != -1) {
+                components.fragment = current.substring(fragment + 1);
+            }
+        }
+
+        try {
+            boolean sameQuery = sameHead && destinationKnown && to - from == queryTo - queryFrom &&
+                (from == -1 || current.regionMatches(from, input, queryFrom, to - from));
+            if (!sameQuery) {
+                destinationKnown = false;
+                destination = headLength != -1 ? Redirectors.destination(redirectors, components) :
+                    rules.redirectors().destination(components);
+                queryFrom = from;
+                queryTo = to;
+                destinationKnown = true;
+            }
+            if (destination == null || destination.equals(current)) {
+                return UrlCleaner.cleanComponents(components, rules, null);
+            }
+        } catch (Exception e) {
+            return current;
+        }
+        if (!destination.equals(unwrappedFrom)) {
+            UrlCleaner.UriComponents next = UrlCleaner.parseUri(destination);
+            unwrapped = next != null ? UrlCleaner.cleanParsed(destination, next, 1, rules, null) : destination;
+            unwrappedFrom = destination;
+        }
+        return unwrapped;
+    }
+
+    private static int headEnd(String url) {
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    // Whether parsing the head alone yields the same scheme, host, port and
+    // path as parsing the whole URL, given queryFirst: the head holds the
+    // scheme separator and the path's '/'
+    private static boolean headParsesAlone(String url, int tail) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd == -1 || schemeEnd >= tail) {
+            return false;
+        }
+        int path = url.indexOf('/', schemeEnd + 3);
+        return path != -1 && path < tail;
+    }
+
+    // Whether the tail has no '?' after a '#', which parseUri would take
+    // into the path
+    private static boolean queryFirst(String url, int tail) {
+        return tail == url.length() || url.charAt(tail) == '?' || url.indexOf('?', tail) == -1;
+    }
+}
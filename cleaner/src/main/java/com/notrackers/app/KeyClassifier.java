@@ -0,0 +1,70 @@
+package com.notrackers.app;
+
+/**
+ * Classifies a parameter key against the global lists of a {@link RulePack}
+ * in one pass over its raw characters, without lowercasing or regex
+ * matching. For the bundled pack it defers to {@link GeneratedMatcher},
+ * which holds the same lists as code.
+ */
+final class KeyClassifier {
+    
+    static final int NONE = 0;
+    static final int GLOBAL_EXACT = 1;
+    static final int GLOBAL_PREFIX = 2;
+    static final int WT_PREFIX = 3;
+    static final int REDIRECT_PARAM = 4;
+    
+    private final KeySet dropExact;
+    private final KeySet dropPrefixes;
+    private final KeySet wtPrefixes;
+    private final KeySet redirectParams;
+    private final boolean generated;
+    
+    KeyClassifier(KeySet dropExact, KeySet dropPrefixes, KeySet wtPrefixes, KeySet redirectParams, 
+                  boolean generated) {
+        this.dropExact = dropExact;
+        this.dropPrefixes = dropPrefixes;
+        this.wtPrefixes = wtPrefixes;
+        this.redirectParams = redirectParams;
+        this.generated = generated;
+    }
+    
+    int classify(String source, int from, int to) {
+        if (generated) {
+            return GeneratedMatcher.classify(source, from, to);
+        }
+        if (dropExact.contains(source, from, to)) {
+            return GLOBAL_EXACT;
+        }
+        if (dropPrefixes.containsPrefixOf(source, from, to)) {
+            return GLOBAL_PREFIX;
+        }
+        if (wtPrefixes.containsPrefixOf(source, from, to)) {
+            return WT_PREFIX;
+        }
+        if (redirectParams.contains(source, from, to)) {
+            return REDIRECT_PARAM;
+        }
+        return NONE;
+    }
+    
+    /** As {@link #classify(String, int, int)}, for a key of ASCII bytes. */
+    int classify(byte[] source, int from, int to) {
+        if (generated) {
+            return GeneratedMatcher.classify(source, from, to);
+        }
+        if (dropExact.contains(source, from, to)) {
+            return GLOBAL_EXACT;
+        }
+        if (dropPrefixes.containsPrefixOf(source, from, to)) {
+            return GLOBAL_PREFIX;
+        }
+        if (wtPrefixes.containsPrefixOf(source, from, to)) {
+            return WT_PREFIX;
+        }
+        if (redirectParams.contains(source, from, to)) {
+            return REDIRECT_PARAM;
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,150 @@
+package com.notrackers.app;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, case-insensitive set of parameter keys. Lookups hash the raw
+ * characters of a region in place, so callers never need to lowercase or
+ * substring a key to test it.
+ */
+final class KeySet {
+    
+    static final KeySet EMPTY = of();
+    
+    private final String[] table;
+    private final int[] hashes;
+    private final int mask;
+    // Distinct key lengths, used when the set holds prefixes
+    private final int[] lengths;
+    
+    private KeySet(String... keys) {
+        int capacity = 4;
+        while (capacity < keys.length * 2) {
+            capacity <<= 1;
+        }
+        table = new String[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        int[] seen = new int[keys.length];
+        int distinct = 0;
+        for (String key : keys) {
+            String folded = fold(key);
+            int h = hash(folded, 0, folded.length());
+            int i = h & mask;
+            while (table[i] != null && !table[i].equals(folded)) {
+                i = (i + 1) & mask;
+            }
+            table[i] = folded;
+            hashes[i] = h;
+            boolean known = false;
+            for (int j = 0; j < distinct; j++) {
+                known |= seen[j] == folded.length();
+            }
+            if (!known) {
+                seen[distinct++] = folded.length();
+            }
+        }
+        lengths = Arrays.copyOf(seen, distinct);
+        Arrays.sort(lengths);
+    }
+    
+    static KeySet of(String... keys) {
+        return new KeySet(keys);
+    }
+    
+    boolean contains(String key) {
+        return contains(key, 0, key.length());
+    }
+    
+    boolean contains(String source, int from, int to) {
+        int length = to - from;
+        int h = hash(source, from, to);
+        for (int i = h & mask; table[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && table[i].length() == length && 
+                table[i].regionMatches(true, 0, source, from, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /** Returns true if some key in this set is a prefix of the region. */
+    boolean containsPrefixOf(String source, int from, int to) {
+        for (int length : lengths) {
+            if (length > to - from) {
+                break;
+            }
+            if (contains(source, from, from + length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * As {@link #contains(String, int, int)}, for a region of ASCII bytes.
+     * Hashes match those of the same key as a string.
+     */
+    boolean contains(byte[] source, int from, int to) {
+        int length = to - from;
+        int h = hash(source, from, to);
+        for (int i = h & mask; table[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && table[i].length() == length && matches(table[i], source, from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    boolean containsPrefixOf(byte[] source, int from, int to) {
+        for (int length : lengths) {
+            if (length > to - from) {
+                break;
+            }
+            if (contains(source, from, from + length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean matches(String folded, byte[] source, int from) {
+        for (int i = 0; i < folded.length(); i++) {
+            if (folded.charAt(i) != fold((char) source[from + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int hash(byte[] source, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + fold((char) source[i]);
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    private static int hash(String source, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + fold(source.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    static String fold(String key) {
+        char[] chars = key.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+    
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+}
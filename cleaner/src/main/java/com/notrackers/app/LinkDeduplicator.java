@@ -0,0 +1,66 @@
+package com.notrackers.app;
+
+/**
+ * Streaming deduplication of links by their cleaned, canonical form. Each
+ * link is cleaned with a {@link UrlCleaner}, the
+ * {@link UrlCleaner#defaultCleaner} unless one is given, so youtu.be, /shorts/,
+ * /gp/product/ and AMP variants collapse to one URL. Only a 64-bit
+ * fingerprint of that URL is kept (see {@link FingerprintSet}), so memory
+ * is eight bytes per slot however long the links are. Not thread-safe.
+ */
+public final class LinkDeduplicator {
+
+    private final FingerprintSet seen;
+    private final UrlCleaner cleaner;
+    private long firstSeen;
+    private long duplicates;
+
+    public LinkDeduplicator(FingerprintSet seen) {
+        this(seen, UrlCleaner.defaultCleaner());
+    }
+
+    public LinkDeduplicator(FingerprintSet seen, UrlCleaner cleaner) {
+        this.seen = seen;
+        this.cleaner = cleaner;
+    }
+
+    /** A deduplicator presized for {@code expectedDistinct} links that grows past that. */
+    public LinkDeduplicator(int expectedDistinct) {
+        this(new FingerprintSet(expectedDistinct));
+    }
+
+    public LinkDeduplicator(int expectedDistinct, UrlCleaner cleaner) {
+        this(new FingerprintSet(expectedDistinct), cleaner);
+    }
+
+    /**
+     * Returns the cleaned link if its canonical form has not been seen
+     * before, or {@code null} if it is a duplicate.
+     */
+    public String offer(String url) {
+        String cleaned = cleaner.clean(url);
+        if (cleaned == null) {
+            return null;
+        }
+        if (seen.add(FingerprintSet.fingerprint(cleaned))) {
+            firstSeen++;
+            return cleaned;
+        }
+        duplicates++;
+        return null;
+    }
+
+    public long firstSeenCount() {
+        return firstSeen;
+    }
+
+    public long duplicateCount() {
+        return duplicates;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkDeduplicator{firstSeen=" + firstSeen + ", duplicates=" + duplicates
+            + ", tableBytes=" + seen.memoryBytes() + "}";
+    }
+}
@@ -0,0 +1,707 @@
+package com.notrackers.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache from raw input to cleaned URL that survives restarts, for
+ * results that are expensive to recompute (nested unwraps, resolved short
+ * links). Install with {@link UrlCleaner#setPersistentCache}; the cleaner
+ * consults it after the in-memory {@link CleanCache} and before running
+ * the pipeline.
+ *
+ * <p>Entries are appended to a log, each record checksummed. An
+ * open-addressed table of 64-bit {@link FingerprintSet#fingerprint}s and log
+ * offsets indexes the log. Both files are memory-mapped, so a lookup is a
+ * few probes and one record read, with no system call. Entries are keyed
+ * on the cleaner's configuration as well as the URL, so results from an
+ * older rule pack are never served.
+ *
+ * <p>Lookups take no lock. They read the mapped files through a snapshot
+ * published by a volatile write, and only see records up to the log end
+ * it published; the log is append-only below that, so a record a lookup
+ * reaches is complete. Puts are serialized among themselves.
+ *
+ * <p>When the log or the table fills up, the newest live entries are
+ * compacted into fresh files, which replace the old ones by rename.
+ * Compaction runs on a background thread so that a put never waits on it;
+ * lookups carry on against the old files, and puts are dropped until it
+ * finishes. The old files are unmapped, once no lookup is still reading
+ * them, before they are replaced. A compaction that fails is logged and
+ * tried again when a put next finds the log full, at most once a minute.
+ *
+ * <p>On open, every record is checked against its checksum. Records past
+ * the last indexed one are re-indexed up to the first torn or corrupt one,
+ * and the log continues from there; an index that does not match its log,
+ * or covers a corrupt record, is rebuilt from it. Lookups then only check
+ * the record's raw URL, so a stale entry is only ever a miss.
+ *
+ * <p>Thread-safe. One process at a time may open a directory.
+ */
+public final class PersistentCache implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(PersistentCache.class.getName());
+
+    private static final int MAGIC = 0x4E544C43;
+    private static final int FORMAT = 1;
+
+    // Log header: magic, format, generation; records follow
+    private static final int LOG_HEADER = 16;
+    // Index header: magic, format, generation, indexed log end, slot count
+    private static final int INDEX_HEADER = 32;
+    private static final int INDEX_LOG_END = 16;
+    private static final int SLOT = 16;
+    // Record: body length, CRC32 of the body, then the body: namespace,
+    // expiry (epoch millis, 0 for none), raw length, raw and cleaned UTF-8
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_HEADER = 20;
+
+    private static final long COMPACTION_RETRY_MILLIS = 60_000;
+
+    private final File directory;
+    private final File logFile;
+    private final File indexFile;
+    private final long maximumBytes;
+    private final int maximumEntries;
+    private final int slots;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    private final Random random = new Random();
+    private final ExecutorService compactor = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), task -> {
+            Thread thread = new Thread(task, "persistent-cache-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Null once closed. Replaced only by compaction and close, under the lock
+    private volatile State state;
+    // Guarded by the lock
+    private int entries;
+    // Puts are dropped while compacting, so the files only change when the
+    // compaction swaps in new ones
+    private boolean compacting;
+    private long nextCompaction;
+    private boolean closing;
+
+    private PersistentCache(Builder builder) throws IOException {
+        directory = builder.directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        logFile = new File(directory, "clean.log");
+        indexFile = new File(directory, "clean.idx");
+        maximumBytes = builder.maximumBytes;
+        maximumEntries = builder.maximumEntries;
+        slots = slotsFor(maximumEntries);
+        lockFile = new RandomAccessFile(new File(directory, "clean.lock"), "rw");
+        FileLock acquired = null;
+        try {
+            acquired = lockFile.getChannel().tryLock();
+            if (acquired == null) {
+                throw new IOException(directory + " is in use by another process");
+            }
+            state = recover();
+        } catch (IOException | RuntimeException e) {
+            lockFile.close();
+            throw e;
+        }
+        lock = acquired;
+    }
+
+    /** Opens or creates the cache in {@code directory} with the default limits. */
+    public static PersistentCache open(File directory) throws IOException {
+        return builder(directory).build();
+    }
+
+    public static Builder builder(File directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * Returns the value stored for {@code raw} under {@code namespace}, or
+     * null if there is none or it has expired.
+     */
+    String get(long namespace, String raw) {
+        State current = acquire();
+        if (current == null) {
+            return null;
+        }
+        try {
+            String value = lookup(current, namespace, raw);
+            (value != null ? hits : misses).incrementAndGet();
+            return value;
+        } finally {
+            current.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stores {@code value} for {@code raw} under {@code namespace}, to expire
+     * at {@code expiresAt} (epoch millis) or never if 0. Entries too large
+     * for a quarter of the log are not stored, and nothing is stored while
+     * the cache compacts; a put that fills the log starts the compaction.
+     */
+    void put(long namespace, String raw, String value, long expiresAt) {
+        byte[] utf8 = raw.getBytes(StandardCharsets.UTF_8);
+        byte[] cleaned = value.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = BODY_HEADER + utf8.length + cleaned.length;
+        int length = RECORD_HEADER + bodyLength;
+        if (length > maximumBytes / 4) {
+            return;
+        }
+        byte[] body = new byte[bodyLength];
+        ByteBuffer.wrap(body).putLong(namespace).putLong(expiresAt).putInt(utf8.length)
+            .put(utf8).put(cleaned);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        synchronized (this) {
+            final State current = state;
+            if (current == null || closing || compacting) {
+                return;
+            }
+            int offset = current.end;
+            if (offset + length + 4 > current.log.capacity() || entries >= maximumEntries) {
+                if (System.currentTimeMillis() >= nextCompaction) {
+                    final int liveEntries = entries;
+                    compacting = true;
+                    compactor.execute(() -> compact(current, liveEntries));
+                }
+                return;
+            }
+            current.log.putInt(offset, bodyLength);
+            current.log.putInt(offset + 4, (int) crc.getValue());
+            ByteBuffer target = current.log.duplicate();
+            target.position(offset + RECORD_HEADER);
+            target.put(body);
+            // A zero length ends the scan on recovery
+            current.log.putInt(offset + length, 0);
+            if (insert(current.index, key(namespace, raw), offset)) {
+                entries++;
+            }
+            current.index.putLong(INDEX_LOG_END, offset + length);
+            // Publishes the record and its slot to lookups
+            current.end = offset + length;
+        }
+    }
+
+    /** Number of entries indexed, including expired ones. */
+    public synchronized int size() {
+        return entries;
+    }
+
+    /** Bytes of log in use. */
+    public long logBytes() {
+        State current = state;
+        return current != null ? current.end : 0;
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    /** Writes the mapped files through to the device. */
+    public synchronized void flush() {
+        if (state != null) {
+            state.log.force();
+            state.index.force();
+        }
+    }
+
+    /**
+     * Waits for a compaction in progress to finish, then flushes and unmaps
+     * the files and releases the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (state == null || closing) {
+                return;
+            }
+            closing = true;
+        }
+        // Outside the lock, which the compaction needs to swap its files in
+        compactor.shutdown();
+        boolean finished = false;
+        boolean interrupted = false;
+        while (!finished) {
+            try {
+                finished = compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                break;
+            }
+        }
+        State last;
+        synchronized (this) {
+            flush();
+            last = state;
+            state = null;
+        }
+        // A compaction still running reads the files; leave them to the
+        // collector then
+        if (finished) {
+            retire(last);
+        }
+        lock.release();
+        lockFile.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PersistentCache[%s, %d entries, %d bytes, %d hits, %d misses]",
+            directory, entries, logBytes(), hits.get(), misses.get());
+    }
+
+    // The current state, counted as read until the caller decrements its
+    // readers, or null once closed
+    private State acquire() {
+        while (true) {
+            State current = state;
+            if (current == null) {
+                return null;
+            }
+            current.readers.incrementAndGet();
+            if (state == current) {
+                return current;
+            }
+            // Swapped meanwhile; the old one may be about to be unmapped
+            current.readers.decrementAndGet();
+        }
+    }
+
+    private String lookup(State current, long namespace, String raw) {
+        ByteBuffer index = current.index;
+        int end = current.end;
+        long key = key(namespace, raw);
+        for (int slot = (int) key & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+            int at = INDEX_HEADER + slot * SLOT;
+            long stored = index.getLong(at);
+            if (stored == 0) {
+                return null;
+            }
+            if (stored == key) {
+                return value(current.log, end, (int) index.getLong(at + 8), namespace,
+                    raw.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // The stored value if the record at offset, below end, is the live
+    // entry for raw, else null. Records were checked when the log was
+    // opened or written, so only the raw URL is compared here
+    private static String value(ByteBuffer log, int end, int offset, long namespace, byte[] raw) {
+        if (offset < LOG_HEADER || offset > end - RECORD_HEADER - BODY_HEADER) {
+            return null;
+        }
+        int length = log.getInt(offset);
+        int body = offset + RECORD_HEADER;
+        if (length < BODY_HEADER + raw.length || length > end - body) {
+            return null;
+        }
+        long expiresAt = log.getLong(body + 8);
+        if (log.getLong(body) != namespace || log.getInt(body + 16) != raw.length ||
+            (expiresAt != 0 && expiresAt <= System.currentTimeMillis())) {
+            return null;
+        }
+        int from = body + BODY_HEADER;
+        for (int i = 0; i < raw.length; i++) {
+            if (log.get(from + i) != raw[i]) {
+                return null;
+            }
+        }
+        byte[] value = new byte[length - BODY_HEADER - raw.length];
+        ByteBuffer source = log.duplicate();
+        source.position(from + raw.length);
+        source.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    // Maps both files, checks every record, rebuilds the index if it does
+    // not belong to the log or covers a bad record, and indexes any records
+    // appended after the index was last updated
+    private State recover() throws IOException {
+        if (!logFile.isFile() || logFile.length() < LOG_HEADER) {
+            createLog(logFile, newGeneration(0));
+        }
+        MappedByteBuffer log = map(logFile, Math.max(maximumBytes, logFile.length()));
+        if (log.getInt(0) != MAGIC || log.getInt(4) != FORMAT) {
+            unmap(log);
+            createLog(logFile, newGeneration(0));
+            log = map(logFile, maximumBytes);
+        }
+        long generation = log.getLong(8);
+
+        MappedByteBuffer index = map(indexFile, INDEX_HEADER + (long) slots * SLOT);
+        int end;
+        if (index.getInt(0) == MAGIC && index.getInt(4) == FORMAT && index.getLong(8) == generation &&
+            index.getInt(24) == slots && index.getLong(INDEX_LOG_END) >= LOG_HEADER &&
+            index.getLong(INDEX_LOG_END) <= log.capacity() && intact(log, (int) index.getLong(INDEX_LOG_END))) {
+            end = (int) index.getLong(INDEX_LOG_END);
+            entries = countSlots(index);
+        } else {
+            clearIndex(index, generation);
+            end = LOG_HEADER;
+            entries = 0;
+        }
+        // A log written under a larger maximumEntries may not fit the
+        // table; the rest of it is given up
+        while (entries < slots - (slots >>> 2)) {
+            byte[] body = body(log, end);
+            if (body == null) {
+                break;
+            }
+            Body reader = new Body(body);
+            if (insert(index, key(reader.namespace, reader.raw()), end)) {
+                entries++;
+            }
+            end += RECORD_HEADER + body.length;
+        }
+        if (end + 4 <= log.capacity()) {
+            log.putInt(end, 0);
+        }
+        index.putLong(INDEX_LOG_END, end);
+        return new State(log, index, generation, end);
+    }
+
+    // Whether the records in [LOG_HEADER, end) are all whole and match
+    // their checksums
+    private static boolean intact(ByteBuffer log, int end) {
+        int offset = LOG_HEADER;
+        while (offset < end) {
+            byte[] body = body(log, offset);
+            if (body == null) {
+                return false;
+            }
+            offset += RECORD_HEADER + body.length;
+        }
+        return offset == end;
+    }
+
+    // Rewrites the newest live entries of a full log into fresh files, up
+    // to half of each limit, and swaps them in. Runs on the compactor; the
+    // old files do not change meanwhile, as puts are dropped
+    private void compact(State old, int oldEntries) {
+        try {
+            long[] live = new long[oldEntries];
+            int count = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                int at = INDEX_HEADER + slot * SLOT;
+                if (old.index.getLong(at) != 0) {
+                    // Offsets fit in 32 bits; pack them above the slot so
+                    // sorting orders by log position
+                    live[count++] = (old.index.getLong(at + 8) << 32) | slot;
+                }
+            }
+            Arrays.sort(live, 0, count);
+            long now = System.currentTimeMillis();
+            long budget = maximumBytes / 2;
+            int keep = maximumEntries / 2;
+            int first = count;
+            while (first > 0 && keep > 0) {
+                int offset = (int) (live[first - 1] >>> 32);
+                byte[] body = body(old.log, offset);
+                if (body != null) {
+                    Body reader = new Body(body);
+                    if (reader.expiresAt != 0 && reader.expiresAt <= now) {
+                        live[first - 1] = -1;
+                    } else if (budget - (RECORD_HEADER + body.length) < LOG_HEADER) {
+                        break;
+                    } else {
+                        budget -= RECORD_HEADER + body.length;
+                        keep--;
+                    }
+                } else {
+                    live[first - 1] = -1;
+                }
+                first--;
+            }
+
+            long next = newGeneration(old.generation);
+            File logTemp = new File(directory, "clean.log.tmp");
+            File indexTemp = new File(directory, "clean.idx.tmp");
+            createLog(logTemp, next);
+            MappedByteBuffer newLog = map(logTemp, maximumBytes);
+            int end = LOG_HEADER;
+            for (int i = first; i < count; i++) {
+                if (live[i] == -1) {
+                    continue;
+                }
+                int offset = (int) (live[i] >>> 32);
+                int length = RECORD_HEADER + old.log.getInt(offset);
+                ByteBuffer record = old.log.duplicate();
+                record.limit(offset + length).position(offset);
+                ByteBuffer target = newLog.duplicate();
+                target.position(end);
+                target.put(record);
+                live[i] = ((long) end << 32) | (live[i] & 0xFFFFFFFFL);
+                end += length;
+            }
+            newLog.putInt(end, 0);
+            newLog.force();
+
+            if (indexTemp.exists() && !indexTemp.delete()) {
+                throw new IOException("cannot replace " + indexTemp);
+            }
+            MappedByteBuffer newIndex = map(indexTemp, INDEX_HEADER + (long) slots * SLOT);
+            clearIndex(newIndex, next);
+            int kept = 0;
+            for (int i = first; i < count; i++) {
+                if (live[i] != -1) {
+                    int slot = (int) (live[i] & 0xFFFFFFFFL);
+                    if (insert(newIndex, old.index.getLong(INDEX_HEADER + slot * SLOT), (int) (live[i] >>> 32))) {
+                        kept++;
+                    }
+                }
+            }
+            newIndex.putLong(INDEX_LOG_END, end);
+            newIndex.force();
+
+            synchronized (this) {
+                if (state != old) {
+                    // Closed meanwhile
+                    return;
+                }
+                state = new State(newLog, newIndex, next, end);
+                entries = kept;
+            }
+            // Some platforms will not replace a file that is still mapped
+            retire(old);
+            // The log first: a new log beside the old index fails the
+            // generation check on open and the index is rebuilt from it
+            if (!logTemp.renameTo(logFile) || !indexTemp.renameTo(indexFile)) {
+                throw new IOException("cannot replace " + logFile);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Compacting " + directory + " failed; retrying when it next fills", e);
+            synchronized (this) {
+                nextCompaction = System.currentTimeMillis() + COMPACTION_RETRY_MILLIS;
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    // Inserts or replaces the entry for key in table; true if it was new
+    private boolean insert(ByteBuffer table, long key, int offset) {
+        for (int slot = (int) key & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+            int at = INDEX_HEADER + slot * SLOT;
+            long stored = table.getLong(at);
+            if (stored == 0 || stored == key) {
+                // The offset first, so a lookup that sees the key sees an
+                // offset for it; one past its log end is a miss
+                table.putLong(at + 8, offset);
+                table.putLong(at, key);
+                return stored == 0;
+            }
+        }
+    }
+
+    // The body of the record at offset in log if it is complete and
+    // intact, else null
+    private static byte[] body(ByteBuffer log, int offset) {
+        if (offset < LOG_HEADER || offset + RECORD_HEADER > log.capacity()) {
+            return null;
+        }
+        int length = log.getInt(offset);
+        if (length < BODY_HEADER || length > log.capacity() - offset - RECORD_HEADER) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        ByteBuffer source = log.duplicate();
+        source.position(offset + RECORD_HEADER);
+        source.get(body);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+        return (int) crc.getValue() == log.getInt(offset + 4) ? body : null;
+    }
+
+    private int countSlots(ByteBuffer table) {
+        int count = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (table.getLong(INDEX_HEADER + slot * SLOT) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void clearIndex(ByteBuffer table, long generation) {
+        for (int at = 0; at < table.capacity(); at += 8) {
+            table.putLong(at, 0);
+        }
+        table.putInt(0, MAGIC);
+        table.putInt(4, FORMAT);
+        table.putLong(8, generation);
+        table.putLong(INDEX_LOG_END, LOG_HEADER);
+        table.putInt(24, slots);
+    }
+
+    private long newGeneration(long current) {
+        long next;
+        do {
+            next = random.nextLong();
+        } while (next == 0 || next == current);
+        return next;
+    }
+
+    // Waits for the lookups still reading old to finish, then unmaps it
+    private static void retire(State old) {
+        while (old.readers.get() != 0) {
+            Thread.yield();
+        }
+        unmap(old.log);
+        unmap(old.index);
+    }
+
+    // Releases a mapping now where the runtime allows it. Elsewhere (Java 8,
+    // Android) it goes when the buffer is collected, and as the files are
+    // only renamed over, that is enough there
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Left to the collector
+        }
+    }
+
+    private static void createLog(File file, long generation) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("cannot replace " + file);
+        }
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(generation);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            return out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long key(long namespace, String raw) {
+        long key = FingerprintSet.fingerprint(raw) ^ namespace * 0x9E3779B97F4A7C15L;
+        return key != 0 ? key : 1;
+    }
+
+    private static int slotsFor(int maximumEntries) {
+        long needed = Math.max(16, (long) maximumEntries * 4 / 3 + 1);
+        if (needed > 1 << 26) {
+            throw new IllegalArgumentException("maximumEntries too large: " + maximumEntries);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /** One pair of mapped files, with the log end published to lookups. */
+    private static final class State {
+        final MappedByteBuffer log;
+        final MappedByteBuffer index;
+        final long generation;
+        // Written by puts under the cache's lock after the record and its
+        // slot, so a lookup that reads it sees both
+        volatile int end;
+        // Lookups reading the files; they are unmapped only once none are
+        final AtomicInteger readers = new AtomicInteger();
+
+        State(MappedByteBuffer log, MappedByteBuffer index, long generation, int end) {
+            this.log = log;
+            this.index = index;
+            this.generation = generation;
+            this.end = end;
+        }
+    }
+
+    /** The fixed fields at the start of a record body. */
+    private static final class Body {
+        final long namespace;
+        final long expiresAt;
+        final int rawLength;
+        private final byte[] body;
+
+        Body(byte[] body) {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            this.body = body;
+            namespace = buffer.getLong();
+            expiresAt = buffer.getLong();
+            rawLength = buffer.getInt();
+        }
+
+        String raw() {
+            return new String(body, BODY_HEADER, rawLength, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static final class Builder {
+        private final File directory;
+        private long maximumBytes = 16L * 1024 * 1024;
+        private int maximumEntries = 100_000;
+
+        private Builder(File directory) {
+            if (directory == null) {
+                throw new IllegalArgumentException("directory == null");
+            }
+            this.directory = directory;
+        }
+
+        /** The log's size on disk; compaction keeps the newest half. */
+        public Builder maximumBytes(long bytes) {
+            if (bytes < 4096 || bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("maximumBytes out of range: " + bytes);
+            }
+            this.maximumBytes = bytes;
+            return this;
+        }
+
+        /** Entries the index holds before compaction; it takes 16 bytes a slot. */
+        public Builder maximumEntries(int entries) {
+            if (entries <= 0) {
+                throw new IllegalArgumentException("maximumEntries must be positive: " + entries);
+            }
+            this.maximumEntries = entries;
+            return this;
+        }
+
+        public PersistentCache build() throws IOException {
+            return new PersistentCache(this);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.notrackers.app;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds a host's registrable domain, the label just left of its public
+ * suffix plus that suffix: amazon.co.uk in www.amazon.co.uk, evil.com in
+ * google.evil.com. Brand rules match the registrable label, so google.*
+ * means google.com or google.co.uk but not google.evil.com, and label
+ * rules match only subdomains left of it, so mail.* takes in
+ * mail.example.com but not gmail.com or mail.com.
+ *
+ * <p>Rather than carry the whole public suffix list, a generic second
+ * level such as co, com or gob under any two-letter country code counts as
+ * a suffix, which covers the country registries brands actually use; a
+ * short list adds the rest.
+ *
+ * <p>The listed suffixes form a trie flattened into primitive arrays when the
+ * class loads, with children found through one open-addressed table keyed
+ * on parent and label. A lookup walks the host's labels once from the
+ * right and costs one probe per label.
+ */
+final class PublicSuffixes {
+
+    // Multi-label suffixes the country pattern below does not cover. Every
+    // single label (com, de, ...) is a public suffix too, as in the public
+    // suffix list's default rule.
+    private static final String[] SUFFIXES = {
+        "me.uk", "ltd.uk", "plc.uk", "nhs.uk", "id.au", "asn.au", "govt.nz", "school.nz",
+        "gr.jp", "lg.jp", "firm.in", "gen.in", "ind.in", "res.in", "web.id", "my.id",
+        "in.th", "mi.th", "gv.at", "nom.es", "info.pl", "biz.pl",
+        "github.io", "gitlab.io", "blogspot.com", "herokuapp.com", "appspot.com",
+        "netlify.app", "vercel.app", "pages.dev", "workers.dev", "web.app", "firebaseapp.com",
+        "azurewebsites.net", "cloudfront.net", "s3.amazonaws.com",
+    };
+
+    // Second-level labels that are public suffixes under any two-letter
+    // country code: co.uk, com.kw, gob.mx, ne.jp and every other such
+    // registry, listed or not
+    private static final String[] COUNTRY_SECOND_LEVEL = {
+        "co", "com", "org", "net", "gov", "edu", "ac", "gob", "or", "ne", "go", "mil",
+    };
+
+    private static final int ROOT = 0;
+
+    // Node n's label is labels[labelFrom[n], labelFrom[n] + labelLength[n]),
+    // lower case. A terminal node ends a suffix.
+    private static final int[] parent;
+    private static final int[] labelFrom;
+    private static final int[] labelLength;
+    private static final boolean[] terminal;
+    // Whether a node has children, so a longer suffix may end below it
+    private static final boolean[] inner;
+    private static final char[] labels;
+    // Node index + 1 of each child, placed at hash(parent, label); 0 is empty
+    private static final int[] children;
+
+    static {
+        int capacity = 1;
+        for (String suffix : SUFFIXES) {
+            capacity += suffix.split("\\.").length;
+        }
+        int[] parents = new int[capacity];
+        int[] froms = new int[capacity];
+        int[] lengths = new int[capacity];
+        boolean[] ends = new boolean[capacity];
+        boolean[] hasChildren = new boolean[capacity];
+        StringBuilder text = new StringBuilder();
+        Map<String, Integer> created = new HashMap<>();
+        int count = 1;
+        for (String suffix : SUFFIXES) {
+            String lower = suffix.toLowerCase(Locale.ROOT);
+            int node = ROOT;
+            int end = lower.length();
+            while (end > 0) {
+                int dot = lower.lastIndexOf('.', end - 1);
+                String label = lower.substring(dot + 1, end);
+                Integer child = created.get(node + " " + label);
+                if (child == null) {
+                    child = count++;
+                    created.put(node + " " + label, child);
+                    parents[child] = node;
+                    hasChildren[node] = true;
+                    froms[child] = text.length();
+                    lengths[child] = label.length();
+                    text.append(label);
+                }
+                node = child;
+                end = dot;
+            }
+            ends[node] = true;
+        }
+        // At most half full, so probes stay short
+        int[] table = new int[Integer.highestOneBit(count) * 4];
+        for (int node = 1; node < count; node++) {
+            int slot = hash(parents[node], text, froms[node], froms[node] + lengths[node]) & (table.length - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = node + 1;
+        }
+        parent = parents;
+        labelFrom = froms;
+        labelLength = lengths;
+        terminal = ends;
+        inner = hasChildren;
+        labels = text.toString().toCharArray();
+        children = table;
+    }
+
+    private PublicSuffixes() {
+    }
+
+    /**
+     * Returns the span of {@code host}'s registrable label, packed as
+     * {@code start << 32 | end}, or -1 if the host has none: it is a
+     * single label or itself a public suffix.
+     */
+    static long registrableLabel(String host) {
+        int end = host.length();
+        int dot = host.lastIndexOf('.', end - 1);
+        if (dot <= 0) {
+            return -1;
+        }
+        int suffixStart = dot + 1;
+        int node = child(ROOT, host, dot + 1, end);
+        if (end - suffixStart == 2 && isLetter(host.charAt(dot + 1)) && isLetter(host.charAt(dot + 2))) {
+            int secondDot = host.lastIndexOf('.', dot - 1);
+            if (isCountrySecondLevel(host, secondDot + 1, dot)) {
+                suffixStart = secondDot + 1;
+            }
+        }
+        end = dot;
+        while (node >= 0 && end > 0) {
+            dot = host.lastIndexOf('.', end - 1);
+            node = child(node, host, dot + 1, end);
+            if (node >= 0 && terminal[node] && dot + 1 < suffixStart) {
+                suffixStart = dot + 1;
+            }
+            end = dot;
+        }
+        int labelEnd = suffixStart - 1;
+        if (labelEnd <= 0) {
+            return -1;
+        }
+        int labelStart = host.lastIndexOf('.', labelEnd - 1) + 1;
+        return labelStart < labelEnd ? (long) labelStart << 32 | labelEnd : -1;
+    }
+
+    /**
+     * Returns the registrable label, lower case, that {@code domain} and
+     * every host under it share, or null if it has none or a listed suffix
+     * lies below it, as s3.amazonaws.com does below amazonaws.com.
+     */
+    static String sharedRegistrableLabel(String domain) {
+        long span = registrableLabel(domain);
+        if (span < 0) {
+            return null;
+        }
+        int node = ROOT;
+        int end = domain.length();
+        while (node >= 0 && end > 0) {
+            int dot = domain.lastIndexOf('.', end - 1);
+            node = child(node, domain, dot + 1, end);
+            end = dot;
+        }
+        if (node >= 0 && inner[node]) {
+            return null;
+        }
+        return domain.substring((int) (span >>> 32), (int) span).toLowerCase(Locale.ROOT);
+    }
+
+    /** Returns true if {@code label} is a whole label of {@code host}, in any case. */
+    static boolean hasLabel(String host, String label) {
+        for (int start = 0; start < host.length(); ) {
+            int end = host.indexOf('.', start);
+            if (end == -1) {
+                end = host.length();
+            }
+            if (end - start == label.length() && host.regionMatches(true, start, label, 0, label.length())) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if {@code label} is the registrable label of {@code host},
+     * whose {@link #registrableLabel} is {@code span}: "amazon" in
+     * www.amazon.co.uk, but not in amazon.evil.com.
+     */
+    static boolean isRegistrableLabel(String host, long span, String label) {
+        if (span < 0) {
+            return false;
+        }
+        int start = (int) (span >>> 32);
+        return (int) span - start == label.length() && host.regionMatches(true, start, label, 0, label.length());
+    }
+
+    /**
+     * Returns true if {@code label} is a whole label of {@code host} left of
+     * its registrable domain: "mail" in mail.example.com, but not in
+     * gmail.com or mail.com.
+     */
+    static boolean isSubdomainLabel(String host, long span, String label) {
+        if (span < 0) {
+            return false;
+        }
+        int limit = (int) (span >>> 32) - 1;
+        int start = 0;
+        while (start < limit) {
+            int dot = host.indexOf('.', start);
+            if (dot - start == label.length() && host.regionMatches(true, start, label, 0, label.length())) {
+                return true;
+            }
+            start = dot + 1;
+        }
+        return false;
+    }
+
+    private static boolean isCountrySecondLevel(String host, int from, int to) {
+        for (String label : COUNTRY_SECOND_LEVEL) {
+            if (label.length() == to - from && host.regionMatches(true, from, label, 0, label.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c | 0x20) >= 'a' && (c | 0x20) <= 'z';
+    }
+
+    // The child of node labelled host[from, to), or -1
+    private static int child(int node, String host, int from, int to) {
+        int mask = children.length - 1;
+        for (int slot = hash(node, host, from, to) & mask; children[slot] != 0; slot = (slot + 1) & mask) {
+            int candidate = children[slot] - 1;
+            if (parent[candidate] == node && labelLength[candidate] == to - from &&
+                labelMatches(host, from, candidate)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean labelMatches(String host, int from, int node) {
+        int offset = labelFrom[node];
+        for (int i = 0; i < labelLength[node]; i++) {
+            if (Character.toLowerCase(host.charAt(from + i)) != labels[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(int node, CharSequence text, int from, int to) {
+        int hash = node * 0x9E3779B9;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,225 @@
+package com.notrackers.app;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Redirector rules from a {@link RulePack}, dispatched by host. Each rule
+ * names the paths it applies to and the query parameters that may carry
+ * the destination, tried in order. Rules matched by brand or label (such
+ * as google.* or mail.*) are tried first, in pack order, then the rule for
+ * the longest matching domain. A brand is the host's registrable label and
+ * a label is any label left of the registrable domain (see
+ * {@link PublicSuffixes}).
+ */
+final class Redirectors {
+    
+    private final List<Rule> rules;
+    private final Rule[] labelRules;
+    private final HostTrie<Rule> byDomain = new HostTrie<>();
+    
+    Redirectors(List<Rule> rules) {
+        this.rules = rules;
+        List<Rule> labelled = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule.brands.length > 0 || rule.labels.length > 0) {
+                labelled.add(rule);
+            }
+            for (String domain : rule.domains) {
+                byDomain.put(domain, rule);
+            }
+        }
+        labelRules = labelled.toArray(new Rule[0]);
+    }
+    
+    /**
+     * These rules followed by {@code extra}. A later rule for the same
+     * domain replaces an earlier one.
+     */
+    Redirectors with(List<Rule> extra) {
+        List<Rule> combined = new ArrayList<>(rules);
+        combined.addAll(extra);
+        return new Redirectors(combined);
+    }
+    
+    /**
+     * Returns the destination carried by a redirector URL, or {@code null}
+     * if the URL is not a redirector or carries no http(s) destination.
+     */
+    String destination(UrlCleaner.UriComponents components) {
+        return destination(components, null);
+    }
+    
+    /** As {@link #destination(UrlCleaner.UriComponents)}, reporting the rule that matched. */
+    String destination(UrlCleaner.UriComponents components, CleanListener listener) {
+        String host = components.host;
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        String path = components.path != null ? components.path : "";
+        
+        long registrable = labelRules.length > 0 ? PublicSuffixes.registrableLabel(host) : -1;
+        for (Rule rule : labelRules) {
+            if (rule.matchesLabel(host, registrable)) {
+                String destination = rule.destination(path, components);
+                if (destination != null) {
+                    return matched(rule, destination, listener);
+                }
+            }
+        }
+        Rule rule = byDomain.lookup(host);
+        String destination = rule != null ? rule.destination(path, components) : null;
+        return destination != null ? matched(rule, destination, listener) : null;
+    }
+    
+    /**
+     * Returns the rules that could unwrap a URL on {@code host}, in the
+     * order {@link #destination} tries them.
+     */
+    Rule[] candidates(String host) {
+        if (host == null || host.isEmpty()) {
+            return new Rule[0];
+        }
+        List<Rule> candidates = new ArrayList<>();
+        long registrable = labelRules.length > 0 ? PublicSuffixes.registrableLabel(host) : -1;
+        for (Rule rule : labelRules) {
+            if (rule.matchesLabel(host, registrable)) {
+                candidates.add(rule);
+            }
+        }
+        Rule rule = byDomain.lookup(host);
+        if (rule != null) {
+            candidates.add(rule);
+        }
+        return candidates.toArray(new Rule[0]);
+    }
+    
+    /**
+     * As {@link #destination(UrlCleaner.UriComponents)}, given the
+     * {@link #candidates} for the URL's host.
+     */
+    static String destination(Rule[] candidates, UrlCleaner.UriComponents components) {
+        String path = components.path != null ? components.path : "";
+        for (Rule rule : candidates) {
+            String destination = rule.destination(path, components);
+            if (destination != null) {
+                return destination;
+            }
+        }
+        return null;
+    }
+
+    private static String matched(Rule rule, String destination, CleanListener listener) {
+        if (listener != null) {
+            listener.onRedirector(rule.name);
+        }
+        return destination;
+    }
+    
+    static final class Rule {
+        final String name;
+        private final String[] domains;
+        private final String[] brands;
+        private final String[] labels;
+        private final String[] paths;
+        private final String[] params;
+        
+        Rule(String name, String[] domains, String[] brands, String[] labels, 
+             String[] paths, String[] params) {
+            this.name = name;
+            this.domains = domains;
+            this.brands = brands;
+            this.labels = labels;
+            this.paths = paths;
+            this.params = params;
+        }
+        
+        @Override
+        public String toString() {
+            return name + Arrays.toString(domains) + Arrays.toString(brands) + Arrays.toString(labels) +
+                Arrays.toString(paths) + Arrays.toString(params);
+        }
+        
+        private boolean matchesLabel(String host, long registrable) {
+            for (String brand : brands) {
+                if (PublicSuffixes.isRegistrableLabel(host, registrable, brand)) {
+                    return true;
+                }
+            }
+            for (String label : labels) {
+                if (PublicSuffixes.isSubdomainLabel(host, registrable, label)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        String destination(String path, UrlCleaner.UriComponents components) {
+            if (!matchesPath(path)) {
+                return null;
+            }
+            for (String name : params) {
+                for (UrlCleaner.Param param : components.queryParams) {
+                    if (!param.keyEquals(name)) {
+                        continue;
+                    }
+                    try {
+                        String destination = URLDecoder.decode(param.value(), "UTF-8");
+                        if (destination.startsWith("http://") || destination.startsWith("https://")) {
+                            return destination;
+                        }
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Returns false only if this rule cannot unwrap the URL: its path
+         * does not match or no destination parameter is present.
+         */
+        boolean mayMatch(ByteCleaner.Parsed url) {
+            if (!matchesPath(url)) {
+                return false;
+            }
+            for (String name : params) {
+                if (url.hasQueryKey(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private boolean matchesPath(ByteCleaner.Parsed url) {
+            if (paths.length == 0) {
+                return true;
+            }
+            for (String fragment : paths) {
+                for (int i = url.pathFrom; i + fragment.length() <= url.pathTo; i++) {
+                    if (ByteCleaner.regionMatches(url.path, i, fragment, true)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        private boolean matchesPath(String path) {
+            if (paths.length == 0) {
+                return true;
+            }
+            for (String fragment : paths) {
+                for (int i = 0; i + fragment.length() <= path.length(); i++) {
+                    if (path.regionMatches(true, i, fragment, 0, fragment.length())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
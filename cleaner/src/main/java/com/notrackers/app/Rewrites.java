@@ -0,0 +1,664 @@
+package com.notrackers.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Canonicalizing rewrites from a {@link RulePack}, such as youtu.be to
+ * youtube.com/watch or /gp/product/ to /dp/. Every rule whose host and path
+ * patterns match is applied, in pack order, each seeing the result of the
+ * ones before it.
+ *
+ * <p>Patterns are compiled once into segment arrays and matched by walking
+ * offsets in the host and path, recording capture offsets as they go, so
+ * nothing is allocated beyond those offsets unless a rule fires. A host
+ * pattern is a dotted name whose labels may be {@code {name}} captures. A
+ * path pattern is a list of segments, each a literal or a {@code {name}}
+ * capture of one non-empty segment, optionally opened and/or closed by
+ * {@code **}, which matches any number of segments. Templates substitute
+ * captures by name.
+ */
+final class Rewrites {
+
+    // Candidate sets are bitmasks over the rules
+    static final int MAX_RULES = 64;
+
+    private final Rule[] rules;
+    // Rules without a host condition, or whose host pattern has no literal suffix
+    private final long anyHost;
+    private final String[] brands;
+    private final long[] brandMasks;
+    // Each registered suffix maps to the rules of that suffix and of every
+    // shorter registered suffix, so the longest match is the full candidate
+    // set; brands are only checked for hosts whose match leaves them open
+    private final HostTrie<SuffixRules> bySuffix = new HostTrie<>();
+
+    Rewrites(List<Rule> rules) {
+        if (rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("at most " + MAX_RULES + " rewrites are supported");
+        }
+        this.rules = rules.toArray(new Rule[0]);
+        long anyHost = 0;
+        Map<String, Long> brandMasks = new LinkedHashMap<>();
+        Map<String, Long> suffixMasks = new LinkedHashMap<>();
+        for (int i = 0; i < this.rules.length; i++) {
+            Rule rule = this.rules[i];
+            long bit = 1L << i;
+            if (rule.domains.length == 0 && rule.brands.length == 0 && rule.hostPatterns.length == 0) {
+                anyHost |= bit;
+            }
+            for (String domain : rule.domains) {
+                or(suffixMasks, domain.toLowerCase(Locale.ROOT), bit);
+            }
+            for (String brand : rule.brands) {
+                or(brandMasks, brand, bit);
+            }
+            for (int p = 0; p < rule.hostPatterns.length; p++) {
+                String suffix = literalSuffix(rule.hostPatterns[p], rule.hostCaptures[p]);
+                if (suffix.isEmpty()) {
+                    anyHost |= bit;
+                } else {
+                    or(suffixMasks, suffix, bit);
+                }
+            }
+        }
+        this.anyHost = anyHost;
+        this.brands = brandMasks.keySet().toArray(new String[0]);
+        this.brandMasks = new long[brands.length];
+        for (int i = 0; i < brands.length; i++) {
+            this.brandMasks[i] = brandMasks.get(brands[i]);
+        }
+        for (String suffix : suffixMasks.keySet()) {
+            long mask = 0;
+            for (Map.Entry<String, Long> other : suffixMasks.entrySet()) {
+                if (isDomainOrSubdomain(suffix, other.getKey())) {
+                    mask |= other.getValue();
+                }
+            }
+            // Hosts under the suffix share its registrable label, so which
+            // brand rules apply is known now
+            String label = PublicSuffixes.sharedRegistrableLabel(suffix);
+            if (label != null) {
+                for (int i = 0; i < brands.length; i++) {
+                    if (brands[i].equalsIgnoreCase(label)) {
+                        mask |= this.brandMasks[i];
+                    }
+                }
+            }
+            bySuffix.put(suffix, new SuffixRules(mask, label != null));
+        }
+    }
+
+    /**
+     * Applies every matching rule in order. Only rules indexed under the
+     * host are tried, and the candidates are looked up again whenever a
+     * rule changes the host.
+     */
+    void apply(UrlCleaner.UriComponents components) {
+        apply(components, null);
+    }
+
+    /** As {@link #apply(UrlCleaner.UriComponents)}, recording each rule that changed the URL, if tracing. */
+    void apply(UrlCleaner.UriComponents components, CleanTrace.Recorder trace) {
+        String host = components.host;
+        long candidates = candidates(host);
+        String url = trace != null ? UrlCleaner.buildUri(components) : null;
+        while (candidates != 0) {
+            int i = Long.numberOfTrailingZeros(candidates);
+            rules[i].apply(components);
+            if (trace != null) {
+                String rewritten = UrlCleaner.buildUri(components);
+                if (!rewritten.equals(url)) {
+                    trace.onRewrite(rules[i].name, rewritten);
+                    url = rewritten;
+                }
+            }
+            if (components.host != host) {
+                host = components.host;
+                candidates = candidates(host);
+            }
+            // Clear rule i and everything before it
+            candidates &= i == MAX_RULES - 1 ? 0 : -1L << (i + 1);
+        }
+    }
+
+    /** The rules whose host condition matches {@code host}, as a bitmask. */
+    long hostMatches(String host) {
+        long candidates = candidates(host);
+        long matches = 0;
+        String text = host != null ? host : "";
+        while (candidates != 0) {
+            long bit = Long.lowestOneBit(candidates);
+            Rule rule = rules[Long.numberOfTrailingZeros(bit)];
+            if (rule.hostPatterns.length == 0 || rule.matchHost(text, null) != Rule.NO_MATCH) {
+                matches |= bit;
+            }
+            candidates &= ~bit;
+        }
+        return matches;
+    }
+
+    /**
+     * Returns false only if none of {@code rules}, already matched by host,
+     * would change the URL.
+     */
+    boolean mayApply(long rules, ByteCleaner.Parsed url) {
+        while (rules != 0) {
+            int i = Long.numberOfTrailingZeros(rules);
+            if (this.rules[i].mayApply(url)) {
+                return true;
+            }
+            rules &= rules - 1;
+        }
+        return false;
+    }
+
+    private long candidates(String host) {
+        long candidates = anyHost;
+        if (host == null || host.isEmpty()) {
+            return candidates;
+        }
+        SuffixRules suffixRules = bySuffix.lookup(host);
+        if (suffixRules != null) {
+            candidates |= suffixRules.rules;
+            if (suffixRules.brandsResolved) {
+                return candidates;
+            }
+        }
+        // A brand can only be the registrable label if it is a label of the
+        // host at all, so most hosts never need the suffix walk
+        long registrable = 0;
+        boolean walked = false;
+        for (int i = 0; i < brands.length; i++) {
+            if (!PublicSuffixes.hasLabel(host, brands[i])) {
+                continue;
+            }
+            if (!walked) {
+                registrable = PublicSuffixes.registrableLabel(host);
+                walked = true;
+            }
+            if (PublicSuffixes.isRegistrableLabel(host, registrable, brands[i])) {
+                candidates |= brandMasks[i];
+            }
+        }
+        return candidates;
+    }
+
+    // The labels after a host pattern's last capture, e.g. "m.wikipedia.org"
+    private static String literalSuffix(String[] labels, int[] captures) {
+        int from = labels.length;
+        while (from > 0 && captures[from - 1] < 0) {
+            from--;
+        }
+        StringBuilder suffix = new StringBuilder();
+        for (int i = from; i < labels.length; i++) {
+            suffix.append(i > from ? "." : "").append(labels[i]);
+        }
+        return suffix.toString();
+    }
+
+    // Map.merge needs API 24 on Android
+    private static void or(Map<String, Long> masks, String key, long bit) {
+        Long mask = masks.get(key);
+        masks.put(key, mask != null ? mask | bit : bit);
+    }
+
+    static boolean isDomainOrSubdomain(String host, String domain) {
+        int start = host.length() - domain.length();
+        return start >= 0 && host.regionMatches(true, start, domain, 0, domain.length()) &&
+               (start == 0 || host.charAt(start - 1) == '.');
+    }
+
+    /** The candidates of a registered suffix, with its brand rules if brandsResolved. */
+    private static final class SuffixRules {
+        final long rules;
+        final boolean brandsResolved;
+
+        SuffixRules(long rules, boolean brandsResolved) {
+            this.rules = rules;
+            this.brandsResolved = brandsResolved;
+        }
+    }
+
+    static final class Rule {
+        final String name;
+        private final String[] domains;
+        private final String[] brands;
+        private final String[][] hostPatterns;
+        private final boolean anyLeading;
+        private final boolean anyTrailing;
+        private final String[] pathSegments;
+        // Capture index per host label / path segment, or -1 for a literal
+        private final int[][] hostCaptures;
+        private final int[] pathCaptures;
+        // "/" plus the first segment of a "/**/..." pattern, if that is a literal
+        private final String leadingLiteral;
+        private final int captureCount;
+        private final Template setHost;
+        private final Template setPath;
+        private final String[] addParamKeys;
+        private final Template[] addParamValues;
+        private final String[] fragmentParams;
+        private final String[] dropPathSegments;
+        private final String[] dropParamKeys;
+        private final String[] dropParamValues;
+        private final boolean stripTrailingSlash;
+
+        /**
+         * Builds a rule from its pack form. Lists of pairs ({@code addParams},
+         * {@code dropParamsIfValue}) are flattened key, value, key, value.
+         * Empty strings mean "unset".
+         *
+         * @throws IllegalArgumentException if a pattern or template is malformed
+         */
+        Rule(String name, String[] domains, String[] brands, String[] hosts, String path,
+             String setHost, String setPath, String[] addParams, String[] fragmentParams,
+             String[] dropPathSegments, String[] dropParamsIfValue, boolean stripTrailingSlash) {
+            this.name = name;
+            this.domains = domains;
+            this.brands = brands;
+            List<String> captures = new ArrayList<>();
+
+            this.hostPatterns = new String[hosts.length][];
+            this.hostCaptures = new int[hosts.length][];
+            for (int i = 0; i < hosts.length; i++) {
+                hostPatterns[i] = hosts[i].toLowerCase(Locale.ROOT).split("\\.");
+                hostCaptures[i] = captureIndexes(hostPatterns[i], captures);
+            }
+
+            String[] segments = path.isEmpty() ? new String[0] : path.substring(1).split("/", -1);
+            if (!path.isEmpty() && !path.startsWith("/")) {
+                throw new IllegalArgumentException("path pattern must start with '/': " + path);
+            }
+            int from = 0;
+            int to = segments.length;
+            this.anyLeading = to > 0 && segments[0].equals("**");
+            if (anyLeading) {
+                from++;
+            }
+            this.anyTrailing = to > from && segments[to - 1].equals("**");
+            if (anyTrailing) {
+                to--;
+            }
+            this.pathSegments = Arrays.copyOfRange(segments, from, to);
+            for (String segment : pathSegments) {
+                if (segment.equals("**")) {
+                    throw new IllegalArgumentException("'**' may only open or close a path pattern: " + path);
+                }
+            }
+            this.pathCaptures = captureIndexes(pathSegments, captures);
+            this.leadingLiteral = anyLeading && pathSegments.length > 0 && pathCaptures[0] < 0 ?
+                "/" + pathSegments[0] : null;
+            this.captureCount = captures.size();
+
+            this.setHost = setHost.isEmpty() ? null : new Template(setHost, captures);
+            this.setPath = setPath.isEmpty() ? null : new Template(setPath, captures);
+            if (addParams.length % 2 != 0 || dropParamsIfValue.length % 2 != 0) {
+                throw new IllegalArgumentException("parameter lists must be key/value pairs");
+            }
+            this.addParamKeys = new String[addParams.length / 2];
+            this.addParamValues = new Template[addParams.length / 2];
+            for (int i = 0; i < addParamKeys.length; i++) {
+                addParamKeys[i] = addParams[2 * i];
+                addParamValues[i] = new Template(addParams[2 * i + 1], captures);
+            }
+            this.fragmentParams = fragmentParams;
+            this.dropPathSegments = dropPathSegments;
+            this.dropParamKeys = new String[dropParamsIfValue.length / 2];
+            this.dropParamValues = new String[dropParamsIfValue.length / 2];
+            for (int i = 0; i < dropParamKeys.length; i++) {
+                dropParamKeys[i] = dropParamsIfValue[2 * i];
+                dropParamValues[i] = dropParamsIfValue[2 * i + 1];
+            }
+            this.stripTrailingSlash = stripTrailingSlash;
+        }
+
+        /**
+         * Applies the rule if it matches. Only called for candidates from the
+         * host index, which already proves a domain or brand match.
+         */
+        void apply(UrlCleaner.UriComponents components) {
+            String host = components.host != null ? components.host : "";
+            String path = components.path != null ? components.path : "";
+            // The start/end offset of each capture, recorded as they match
+            int[] spans = captureCount > 0 ? new int[captureCount * 2] : null;
+            int hostPattern = hostPatterns.length == 0 ? ANY_HOST : matchHost(host, spans);
+            if (hostPattern == NO_MATCH || !matchPath(path, spans)) {
+                return;
+            }
+            String[] captured = null;
+            if (captureCount > 0) {
+                // A capture bound only by a host pattern that did not match is empty
+                captured = new String[captureCount];
+                Arrays.fill(captured, "");
+                if (hostPattern >= 0) {
+                    capture(hostCaptures[hostPattern], spans, host, captured);
+                }
+                capture(pathCaptures, spans, path, captured);
+            }
+
+            if (setHost != null) {
+                components.host = setHost.expand(captured);
+            }
+            if (setPath != null) {
+                components.path = setPath.expand(captured);
+            }
+            int insertAt = 0;
+            for (int i = 0; i < addParamKeys.length; i++) {
+                if (indexOfParam(components.queryParams, addParamKeys[i]) == -1) {
+                    components.queryParams.add(insertAt++,
+                        new UrlCleaner.Param(addParamKeys[i], addParamValues[i].expand(captured)));
+                }
+            }
+            for (String key : fragmentParams) {
+                moveFragmentParam(components, key);
+            }
+            if (dropPathSegments.length > 0 && components.path != null) {
+                components.path = dropSegments(components.path);
+            }
+            for (int i = 0; i < dropParamKeys.length; i++) {
+                List<UrlCleaner.Param> params = components.queryParams;
+                for (int p = params.size() - 1; p >= 0; p--) {
+                    if (params.get(p).keyEquals(dropParamKeys[i]) &&
+                        params.get(p).value().equalsIgnoreCase(dropParamValues[i])) {
+                        params.remove(p);
+                    }
+                }
+            }
+            if (stripTrailingSlash && components.path != null &&
+                components.path.length() > 1 && components.path.endsWith("/")) {
+                components.path = components.path.substring(0, components.path.length() - 1);
+            }
+        }
+
+        // A conservative test over bytes: false means apply() would do nothing
+        boolean mayApply(ByteCleaner.Parsed url) {
+            if (leadingLiteral != null && !url.pathHasSegmentAt(leadingLiteral)) {
+                return false;
+            }
+            if (setHost != null || setPath != null || addParamKeys.length > 0) {
+                return true;
+            }
+            for (String key : fragmentParams) {
+                if (url.fragmentStartsWith(key, '=')) {
+                    return true;
+                }
+            }
+            for (String segment : dropPathSegments) {
+                if (url.pathHasSegment(segment)) {
+                    return true;
+                }
+            }
+            for (String key : dropParamKeys) {
+                if (url.hasQueryKey(key)) {
+                    return true;
+                }
+            }
+            return stripTrailingSlash && url.pathTo - url.pathFrom > 1 && url.path[url.pathTo - 1] == '/';
+        }
+
+        private static final int NO_MATCH = -2;
+        private static final int ANY_HOST = -1;
+
+        // Returns the index of the matching host pattern, ANY_HOST if the rule
+        // has no host condition or matched by domain or brand, else NO_MATCH.
+        // Capture offsets are written to spans unless it is null.
+        private int matchHost(String host, int[] spans) {
+            if (domains.length == 0 && brands.length == 0 && hostPatterns.length == 0) {
+                return ANY_HOST;
+            }
+            for (String domain : domains) {
+                if (isDomainOrSubdomain(host, domain)) {
+                    return ANY_HOST;
+                }
+            }
+            long registrable = brands.length > 0 ? PublicSuffixes.registrableLabel(host) : -1;
+            for (String brand : brands) {
+                if (PublicSuffixes.isRegistrableLabel(host, registrable, brand)) {
+                    return ANY_HOST;
+                }
+            }
+            for (int i = 0; i < hostPatterns.length; i++) {
+                if (matchLabels(host, hostPatterns[i], hostCaptures[i], spans)) {
+                    return i;
+                }
+            }
+            return NO_MATCH;
+        }
+
+        private static boolean matchLabels(String host, String[] labels, int[] captures, int[] spans) {
+            int start = 0;
+            for (int i = 0; i < labels.length; i++) {
+                int end = host.indexOf('.', start);
+                if (end == -1) {
+                    end = host.length();
+                }
+                if ((i == labels.length - 1) != (end == host.length())) {
+                    return false;
+                }
+                if (captures[i] >= 0) {
+                    if (end == start) {
+                        return false;
+                    }
+                    if (spans != null) {
+                        spans[2 * captures[i]] = start;
+                        spans[2 * captures[i] + 1] = end;
+                    }
+                } else if (end - start != labels[i].length() ||
+                           !host.regionMatches(true, start, labels[i], 0, end - start)) {
+                    return false;
+                }
+                start = end + 1;
+            }
+            return true;
+        }
+
+        private boolean matchPath(String path, int[] spans) {
+            if (pathSegments.length == 0 && !anyLeading && !anyTrailing) {
+                return true;
+            }
+            if (!path.startsWith("/")) {
+                return false;
+            }
+            if (!anyLeading) {
+                return matchSegmentsAt(path, 1, spans);
+            }
+            if (leadingLiteral != null) {
+                // Jump between occurrences of the first literal segment
+                for (int at = path.indexOf(leadingLiteral); at != -1; at = path.indexOf(leadingLiteral, at + 1)) {
+                    if (matchSegmentsAt(path, at + 1, spans)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (int start = 1; start <= path.length(); start = path.indexOf('/', start) + 1) {
+                if (matchSegmentsAt(path, start, spans)) {
+                    return true;
+                }
+                if (path.indexOf('/', start) == -1) {
+                    break;
+                }
+            }
+            return false;
+        }
+
+        // Matches pathSegments starting at the segment that begins at offset start
+        private boolean matchSegmentsAt(String path, int start, int[] spans) {
+            int pos = start;
+            for (int i = 0; i < pathSegments.length; i++) {
+                if (pos > path.length()) {
+                    return false;
+                }
+                int end = path.indexOf('/', pos);
+                if (end == -1) {
+                    end = path.length();
+                }
+                if (pathCaptures[i] >= 0) {
+                    if (end == pos) {
+                        return false;
+                    }
+                    if (spans != null) {
+                        spans[2 * pathCaptures[i]] = pos;
+                        spans[2 * pathCaptures[i] + 1] = end;
+                    }
+                } else if (end - pos != pathSegments[i].length() ||
+                           !path.regionMatches(pos, pathSegments[i], 0, end - pos)) {
+                    return false;
+                }
+                pos = end + 1;
+            }
+            return anyTrailing || pos > path.length();
+        }
+
+        private String dropSegments(String path) {
+            if (!containsAnySegment(path)) {
+                return path;
+            }
+            StringBuilder kept = null;
+            int start = path.startsWith("/") ? 1 : 0;
+            while (start <= path.length()) {
+                int end = path.indexOf('/', start);
+                if (end == -1) {
+                    end = path.length();
+                }
+                boolean drop = false;
+                for (String segment : dropPathSegments) {
+                    if (end - start == segment.length() && path.regionMatches(start, segment, 0, end - start)) {
+                        drop = true;
+                        break;
+                    }
+                }
+                if (drop && kept == null) {
+                    kept = new StringBuilder(path.length());
+                    kept.append(path, 0, Math.max(0, start - 1));
+                } else if (!drop && kept != null) {
+                    kept.append('/').append(path, start, end);
+                }
+                start = end + 1;
+            }
+            if (kept == null) {
+                return path;
+            }
+            return kept.length() == 0 ? "/" : kept.toString();
+        }
+
+        // Finds a whole-segment occurrence with indexOf, without walking every segment
+        private boolean containsAnySegment(String path) {
+            for (String segment : dropPathSegments) {
+                for (int at = path.indexOf(segment); at != -1; at = path.indexOf(segment, at + 1)) {
+                    int end = at + segment.length();
+                    if ((at == 0 || path.charAt(at - 1) == '/') &&
+                        (end == path.length() || path.charAt(end) == '/')) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static void moveFragmentParam(UrlCleaner.UriComponents components, String key) {
+            String fragment = components.fragment;
+            if (fragment == null || fragment.length() <= key.length() ||
+                fragment.charAt(key.length()) != '=' || !fragment.startsWith(key)) {
+                return;
+            }
+            String value = fragment.substring(key.length() + 1);
+            int index = indexOfParam(components.queryParams, key);
+            if (index != -1) {
+                components.queryParams.get(index).setValue(value);
+            } else {
+                components.queryParams.add(new UrlCleaner.Param(key, value));
+            }
+            components.fragment = null;
+        }
+
+        private static int indexOfParam(List<UrlCleaner.Param> params, String key) {
+            for (int i = 0; i < params.size(); i++) {
+                if (params.get(i).keyEquals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int[] captureIndexes(String[] parts, List<String> captures) {
+            int[] indexes = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.length() > 2 && part.startsWith("{") && part.endsWith("}")) {
+                    String name = part.substring(1, part.length() - 1);
+                    if (captures.contains(name)) {
+                        throw new IllegalArgumentException("capture {" + name + "} bound twice");
+                    }
+                    indexes[i] = captures.size();
+                    captures.add(name);
+                } else {
+                    indexes[i] = -1;
+                }
+            }
+            return indexes;
+        }
+
+        private static void capture(int[] captures, int[] spans, String text, String[] captured) {
+            for (int i : captures) {
+                if (i >= 0) {
+                    captured[i] = text.substring(spans[2 * i], spans[2 * i + 1]);
+                }
+            }
+        }
+    }
+
+    /** Literal text with {@code {name}} captures substituted in. */
+    static final class Template {
+        private final String[] literals;
+        // Capture index following each literal, or -1 after the last
+        private final int[] captures;
+
+        Template(String template, List<String> names) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> captures = new ArrayList<>();
+            int start = 0;
+            int open;
+            while ((open = template.indexOf('{', start)) != -1) {
+                int close = template.indexOf('}', open);
+                if (close == -1) {
+                    throw new IllegalArgumentException("unterminated capture in " + template);
+                }
+                int index = names.indexOf(template.substring(open + 1, close));
+                if (index == -1) {
+                    throw new IllegalArgumentException("unknown capture " +
+                        template.substring(open, close + 1) + " in " + template);
+                }
+                literals.add(template.substring(start, open));
+                captures.add(index);
+                start = close + 1;
+            }
+            literals.add(template.substring(start));
+            captures.add(-1);
+            this.literals = literals.toArray(new String[0]);
+            this.captures = new int[captures.size()];
+            for (int i = 0; i < this.captures.length; i++) {
+                this.captures[i] = captures.get(i);
+            }
+        }
+
+        String expand(String[] captured) {
+            if (literals.length == 1) {
+                return literals[0];
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < literals.length; i++) {
+                sb.append(literals[i]);
+                if (captures[i] >= 0) {
+                    sb.append(captured[captures[i]]);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
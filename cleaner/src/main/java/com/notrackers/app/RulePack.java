@@ -0,0 +1,245 @@
+package com.notrackers.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled rule pack (see {@code RulePackCompiler}). Loading decodes the
+ * header, the global lists, the host index and the redirectors; each host
+ * section is decoded the first time a URL on that host is cleaned.
+ *
+ * <p>Packs are normally memory-mapped, so the backing bytes stay off-heap
+ * and only the sections actually used are ever read.
+ */
+public final class RulePack {
+
+    /** Classpath location of the pack built from {@code src/main/rules}. */
+    public static final String DEFAULT_RESOURCE = "/notrackers/trackers.ntrp";
+
+    // Header and host index values; RulePackCompiler documents the layout
+    static final int MAGIC = 0x4E545250;
+    static final int FORMAT = 3;
+    static final int KIND_DOMAIN = 0;
+    static final int KIND_BRAND = 1;
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final KeyClassifier classifier;
+    private final HostRules hostRules;
+    private final Redirectors redirectors;
+    private final Rewrites rewrites;
+    private final long fingerprint;
+
+    private RulePack(ByteBuffer buffer, boolean allowGenerated) {
+        this.buffer = buffer;
+        Cursor header = new Cursor(buffer, 0);
+        if (header.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a rule pack");
+        }
+        int format = header.readShort();
+        if (format != FORMAT) {
+            throw new IllegalArgumentException("Unsupported rule pack format " + format);
+        }
+        version = header.readInt();
+        fingerprint = header.readLong();
+        int globalOffset = header.readInt();
+        int indexOffset = header.readInt();
+        int redirectorOffset = header.readInt();
+        int rewriteOffset = header.readInt();
+        // The bundled rules are also compiled to code; any other pack runs on tables
+        boolean generated = allowGenerated && fingerprint() == GeneratedMatcher.PACK_FINGERPRINT;
+
+        Cursor global = new Cursor(buffer, globalOffset);
+        classifier = new KeyClassifier(
+            KeySet.of(global.readList()),
+            KeySet.of(global.readList()),
+            KeySet.of(global.readList()),
+            KeySet.of(global.readList()),
+            generated);
+
+        Cursor index = new Cursor(buffer, indexOffset);
+        HostTrie<HostRules.Section> byDomain = new HostTrie<>();
+        Map<String, HostRules.Section> byBrand = new LinkedHashMap<>();
+        Map<Integer, HostRules.Section> sections = new LinkedHashMap<>();
+        for (int i = index.readInt(); i > 0; i--) {
+            int kind = index.readByte();
+            String name = index.readString();
+            int offset = index.readInt();
+            HostRules.Section section = sections.get(offset);
+            if (section == null) {
+                section = new HostRules.Section(this, offset, name);
+                sections.put(offset, section);
+            }
+            if (kind == KIND_BRAND) {
+                byBrand.put(name, section);
+            } else {
+                byDomain.put(name, section);
+            }
+        }
+        hostRules = new HostRules(byDomain, byBrand, 
+            generated ? sections.values().toArray(new HostRules.Section[0]) : null);
+
+        Cursor redirectorCursor = new Cursor(buffer, redirectorOffset);
+        List<Redirectors.Rule> rules = new ArrayList<>();
+        for (int i = redirectorCursor.readShort(); i > 0; i--) {
+            String name = redirectorCursor.readString();
+            String[] domains = redirectorCursor.readList();
+            String[] brands = redirectorCursor.readList();
+            String[] labels = redirectorCursor.readList();
+            String[] paths = redirectorCursor.readList();
+            String[] params = redirectorCursor.readList();
+            rules.add(new Redirectors.Rule(name, domains, brands, labels, paths, params));
+        }
+        redirectors = new Redirectors(rules);
+
+        Cursor rewriteCursor = new Cursor(buffer, rewriteOffset);
+        List<Rewrites.Rule> rewriteRules = new ArrayList<>();
+        for (int i = rewriteCursor.readShort(); i > 0; i--) {
+            rewriteRules.add(new Rewrites.Rule(
+                rewriteCursor.readString(),
+                rewriteCursor.readList(),
+                rewriteCursor.readList(),
+                rewriteCursor.readList(),
+                rewriteCursor.readString(),
+                rewriteCursor.readString(),
+                rewriteCursor.readString(),
+                rewriteCursor.readList(),
+                rewriteCursor.readList(),
+                rewriteCursor.readList(),
+                rewriteCursor.readList(),
+                rewriteCursor.readByte() != 0));
+        }
+        rewrites = new Rewrites(rewriteRules);
+    }
+
+    /** Memory-maps a pack file. */
+    public static RulePack map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return map(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Memory-maps a pack stored at {@code offset} within a larger file, such
+     * as an uncompressed asset inside an APK.
+     */
+    public static RulePack map(FileChannel channel, long offset, long length) throws IOException {
+        return load(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    public static RulePack load(ByteBuffer buffer) {
+        return new RulePack(buffer.duplicate(), true);
+    }
+
+    /** Loads a pack that always runs on its tables, for {@code MatcherCheck}. */
+    static RulePack loadInterpreted(ByteBuffer buffer) {
+        return new RulePack(buffer.duplicate(), false);
+    }
+
+    /** Loads the pack bundled with this library. */
+    public static RulePack loadDefault() throws IOException {
+        try (InputStream in = RulePack.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Missing bundled rule pack " + DEFAULT_RESOURCE);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                bytes.write(chunk, 0, read);
+            }
+            return load(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * A 64-bit fingerprint of the pack's bytes, stored in its header by the
+     * compiler, so results stored by one pack are not served by another.
+     */
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    KeyClassifier classifier() {
+        return classifier;
+    }
+
+    HostRules hostRules() {
+        return hostRules;
+    }
+
+    Redirectors redirectors() {
+        return redirectors;
+    }
+
+    Rewrites rewrites() {
+        return rewrites;
+    }
+
+    HostRules.Rule decodeHostSection(int offset, String family) {
+        Cursor section = new Cursor(buffer, offset);
+        KeySet keep = KeySet.of(section.readList());
+        KeySet drop = KeySet.of(section.readList());
+        KeySet dropPrefixes = KeySet.of(section.readList());
+        String keepIfValueContains = section.readString();
+        KeySet keepIfValueContainsKeys = KeySet.of(section.readList());
+        String longValuePrefix = section.readString();
+        int longValueLength = section.readInt();
+        return new HostRules.Rule(family, keep, drop, dropPrefixes,
+            keepIfValueContains.isEmpty() ? null : keepIfValueContains, keepIfValueContainsKeys,
+            longValuePrefix.isEmpty() ? null : longValuePrefix, longValueLength);
+    }
+
+    private static final class Cursor {
+        private final ByteBuffer buffer;
+
+        Cursor(ByteBuffer source, int offset) {
+            buffer = source.duplicate();
+            buffer.position(offset);
+        }
+
+        int readByte() {
+            return buffer.get() & 0xFF;
+        }
+
+        int readShort() {
+            return buffer.getShort() & 0xFFFF;
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        long readLong() {
+            return buffer.getLong();
+        }
+
+        String readString() {
+            byte[] utf8 = new byte[readShort()];
+            buffer.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        String[] readList() {
+            String[] values = new String[readShort()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readString();
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.notrackers.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Follows the HTTP redirects of link shorteners (t.co, bit.ly, lnkd.in,
+ * ...), whose destination no query parameter reveals. Opt-in, since it
+ * contacts the shortener.
+ *
+ * <p>Each hop is a HEAD request without following redirects; its
+ * {@code Location} is cleaned by the {@link UrlCleaner} before the next
+ * hop, so query redirectors unwrap and trackers drop along the way.
+ * Resolution stops at the first URL whose host is not a shortener, after
+ * {@code maxHops}, or on any error, returning the last URL reached,
+ * cleaned.
+ *
+ * <p>Requests run on a fixed pool and reuse the platform's keep-alive
+ * connections. At most {@code perHostConcurrency} requests run against one
+ * host at a time, and concurrent resolutions of the same link share one
+ * request chain. Successful results are cached until their TTL expires,
+ * in memory and, if one is given, in a {@link PersistentCache}; failures
+ * are not cached.
+ */
+public final class ShortLinkResolver implements Closeable {
+
+    public static final String[] DEFAULT_HOSTS = {
+        "t.co", "bit.ly", "lnkd.in", "tinyurl.com", "ow.ly", "buff.ly", "goo.gl", "is.gd",
+        "amzn.to", "fb.me", "redd.it", "trib.al", "dlvr.it", "shorturl.at", "rebrand.ly"
+    };
+
+    private static final String USER_AGENT = "noTrackers";
+
+    // Keeps resolved links apart from cleaned URLs in a shared persistent cache
+    private static final long NAMESPACE = 0x5348524C494E4BL;
+
+    private final UrlCleaner cleaner;
+    private final HostTrie<Boolean> hosts = new HostTrie<>();
+    private final int maxHops;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int perHostConcurrency;
+    private final ExecutorService executor;
+    private final ResultCache cache;
+    private final PersistentCache persistentCache;
+    private final long cacheTtlMillis;
+
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Future<String>> inFlight = new ConcurrentHashMap<>();
+
+    private ShortLinkResolver(Builder builder) {
+        cleaner = builder.cleaner != null ? builder.cleaner : UrlCleaner.defaultCleaner();
+        for (String host : builder.hosts) {
+            hosts.put(host, Boolean.TRUE);
+        }
+        maxHops = builder.maxHops;
+        connectTimeoutMillis = builder.connectTimeoutMillis;
+        readTimeoutMillis = builder.readTimeoutMillis;
+        perHostConcurrency = builder.perHostConcurrency;
+        cache = new ResultCache(builder.maximumCacheSize, TimeUnit.MILLISECONDS.toNanos(builder.cacheTtlMillis));
+        persistentCache = builder.persistentCache;
+        cacheTtlMillis = builder.cacheTtlMillis;
+        AtomicInteger workers = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(builder.threads, task -> {
+            Thread thread = new Thread(task, "short-link-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Whether {@code url}, once cleaned, is on a shortener host. */
+    public boolean isShortLink(String url) {
+        return shortLinkHost(cleaner.clean(url)) != null;
+    }
+
+    /**
+     * Resolves {@code url} on the pool. The future never fails: errors
+     * yield the last URL reached, cleaned.
+     */
+    public Future<String> resolve(String url) {
+        String cleaned = cleaner.clean(url);
+        if (cleaned == null || shortLinkHost(cleaned) == null) {
+            return resolved(cleaned);
+        }
+        String cached = cached(cleaned);
+        if (cached != null) {
+            return resolved(cached);
+        }
+        Future<String> running = inFlight.get(cleaned);
+        if (running != null) {
+            return running;
+        }
+        FutureTask<String> task = new FutureTask<String>(new Resolution(cleaned)) {
+            @Override
+            protected void done() {
+                inFlight.remove(cleaned, this);
+            }
+        };
+        running = inFlight.putIfAbsent(cleaned, task);
+        if (running != null) {
+            return running;
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    /** Resolves every URL in parallel, returning results in input order. */
+    public List<String> resolveAll(List<String> urls) throws InterruptedException {
+        List<Future<String>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            futures.add(resolve(url));
+        }
+        List<String> results = new ArrayList<>(urls.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                results.add(cleaner.clean(urls.get(i)));
+            }
+        }
+        return results;
+    }
+
+    /** Stops the pool; resolutions already queued are abandoned. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static Future<String> resolved(String url) {
+        FutureTask<String> task = new FutureTask<>(() -> url);
+        task.run();
+        return task;
+    }
+
+    private String cached(String link) {
+        String cached = cache.get(link);
+        if (cached == null && persistentCache != null) {
+            cached = persistentCache.get(namespace(), link);
+            if (cached != null) {
+                cache.put(link, cached);
+            }
+        }
+        return cached;
+    }
+
+    // Each hop is cleaned, so results depend on the cleaner's configuration
+    private long namespace() {
+        return cleaner.config().fingerprint() ^ NAMESPACE;
+    }
+
+    // The cleaned URL's host if it is a shortener, else null
+    private String shortLinkHost(String url) {
+        UrlCleaner.UriComponents components = UrlCleaner.parseUri(url);
+        if (components == null || components.host == null || components.host.isEmpty() ||
+            !("http".equalsIgnoreCase(components.scheme) || "https".equalsIgnoreCase(components.scheme))) {
+            return null;
+        }
+        return hosts.lookup(components.host) != null ? components.host.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private final class Resolution implements Callable<String> {
+        private final String link;
+
+        Resolution(String link) {
+            this.link = link;
+        }
+
+        @Override
+        public String call() {
+            String current = link;
+            try {
+                for (int hop = 0; hop < maxHops; hop++) {
+                    String host = shortLinkHost(current);
+                    if (host == null) {
+                        break;
+                    }
+                    String cached = cached(current);
+                    if (cached != null) {
+                        current = cached;
+                        break;
+                    }
+                    String location = location(host, current);
+                    if (location == null) {
+                        break;
+                    }
+                    String next = cleaner.clean(location);
+                    if (next.equals(current)) {
+                        break;
+                    }
+                    current = next;
+                }
+            } catch (IOException | RuntimeException e) {
+                return current;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return current;
+            }
+            cache.put(link, current);
+            if (persistentCache != null && cacheTtlMillis > 0) {
+                persistentCache.put(namespace(), link, current, System.currentTimeMillis() + cacheTtlMillis);
+            }
+            return current;
+        }
+    }
+
+    // The absolute http(s) URL a redirect response points to, or null if
+    // the response is not a redirect
+    private String location(String host, String url) throws IOException, InterruptedException {
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(perHostConcurrency);
+            permits = hostPermits.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        if (!permits.tryAcquire(connectTimeoutMillis + readTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new IOException("timed out waiting for " + host);
+        }
+        URL target = new URL(url);
+        String location;
+        try {
+            HttpURLConnection connection = open(target, "HEAD");
+            int status = connection.getResponseCode();
+            boolean get = status == HttpURLConnection.HTTP_BAD_METHOD ||
+                          status == HttpURLConnection.HTTP_NOT_IMPLEMENTED;
+            if (get) {
+                // Some shorteners only answer GET
+                connection.disconnect();
+                connection = open(target, "GET");
+                status = connection.getResponseCode();
+            }
+            location = status >= 300 && status <= 399 && status != HttpURLConnection.HTTP_NOT_MODIFIED ?
+                connection.getHeaderField("Location") : null;
+            if (get) {
+                // The body is never read, so the connection cannot be reused
+                connection.disconnect();
+            }
+        } finally {
+            permits.release();
+        }
+        if (location == null) {
+            return null;
+        }
+        URL next = new URL(target, location);
+        String protocol = next.getProtocol();
+        return protocol.equals("http") || protocol.equals("https") ? next.toString() : null;
+    }
+
+    private HttpURLConnection open(URL url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        return connection;
+    }
+
+    /** Bounded LRU map from short link to destination, with a TTL per entry. */
+    private static final class ResultCache {
+        private final long ttlNanos;
+        private final LinkedHashMap<String, CachedDestination> entries;
+
+        ResultCache(final int maximumSize, long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+            entries = new LinkedHashMap<String, CachedDestination>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedDestination> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+
+        synchronized String get(String link) {
+            CachedDestination entry = entries.get(link);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt >= 0) {
+                entries.remove(link);
+                return null;
+            }
+            return entry.destination;
+        }
+
+        synchronized void put(String link, String destination) {
+            if (ttlNanos > 0) {
+                entries.put(link, new CachedDestination(destination, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    private static final class CachedDestination {
+        final String destination;
+        final long expiresAt;
+
+        CachedDestination(String destination, long expiresAt) {
+            this.destination = destination;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static final class Builder {
+        private UrlCleaner cleaner;
+        private final List<String> hosts = new ArrayList<>();
+        private int maxHops = 5;
+        private int connectTimeoutMillis = 3000;
+        private int readTimeoutMillis = 3000;
+        private int perHostConcurrency = 4;
+        private int threads = 8;
+        private long cacheTtlMillis = TimeUnit.HOURS.toMillis(24);
+        private int maximumCacheSize = 10_000;
+        private PersistentCache persistentCache;
+
+        private Builder() {
+            for (String host : DEFAULT_HOSTS) {
+                hosts.add(host);
+            }
+        }
+
+        /** The cleaner applied to every hop; the default cleaner unless set. */
+        public Builder cleaner(UrlCleaner cleaner) {
+            if (cleaner == null) {
+                throw new IllegalArgumentException("cleaner == null");
+            }
+            this.cleaner = cleaner;
+            return this;
+        }
+
+        /** Replaces the shortener hosts; each also covers its subdomains. */
+        public Builder hosts(String... hosts) {
+            this.hosts.clear();
+            for (String host : hosts) {
+                addHost(host);
+            }
+            return this;
+        }
+
+        /** Adds a shortener host to the defaults. */
+        public Builder addHost(String host) {
+            if (host == null || host.isEmpty() || host.startsWith(".") || host.endsWith(".")) {
+                throw new IllegalArgumentException("invalid host: " + host);
+            }
+            hosts.add(host.toLowerCase(Locale.ROOT));
+            return this;
+        }
+
+        public Builder maxHops(int hops) {
+            this.maxHops = positive("maxHops", hops);
+            return this;
+        }
+
+        public Builder connectTimeout(int millis) {
+            this.connectTimeoutMillis = positive("connectTimeout", millis);
+            return this;
+        }
+
+        public Builder readTimeout(int millis) {
+            this.readTimeoutMillis = positive("readTimeout", millis);
+            return this;
+        }
+
+        /** Requests allowed in flight against one host at once. */
+        public Builder perHostConcurrency(int requests) {
+            this.perHostConcurrency = positive("perHostConcurrency", requests);
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = positive("threads", threads);
+            return this;
+        }
+
+        /** How long a resolved link is remembered; zero disables the cache. */
+        public Builder cacheTtl(long millis) {
+            if (millis < 0) {
+                throw new IllegalArgumentException("cacheTtl must not be negative: " + millis);
+            }
+            this.cacheTtlMillis = millis;
+            return this;
+        }
+
+        public Builder maximumCacheSize(int entries) {
+            this.maximumCacheSize = positive("maximumCacheSize", entries);
+            return this;
+        }
+
+        /**
+         * Also keeps results, with the same TTL, in {@code cache}, which
+         * may be shared with a {@link UrlCleaner}. Closing it is up to the
+         * caller.
+         */
+        public Builder persistentCache(PersistentCache cache) {
+            this.persistentCache = cache;
+            return this;
+        }
+
+        public ShortLinkResolver build() {
+            return new ShortLinkResolver(this);
+        }
+
+        private static int positive(String name, int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.notrackers.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds every http(s) URL in free text, such as a shared sentence or a
+ * chat export, and cleans each one in place. The text is scanned once,
+ * left to right, and copied into a single output buffer; text around the
+ * links is copied through untouched.
+ */
+public final class TextCleaner {
+
+    private static final String[] CONTRACTIONS = {"s", "d", "ll", "re", "ve"};
+
+    private TextCleaner() {
+    }
+
+    /** Returns {@code text} with every URL in it cleaned. */
+    public static String cleanText(CharSequence text) {
+        return cleanText(text, UrlCleaner.defaultCleaner());
+    }
+
+    /** Returns {@code text} with every URL in it cleaned by {@code cleaner}. */
+    public static String cleanText(CharSequence text, UrlCleaner cleaner) {
+        StringBuilder out = new StringBuilder(text.length());
+        cleanText(text, out, cleaner);
+        return out.toString();
+    }
+
+    /**
+     * Appends {@code text} to {@code out} with every URL cleaned, and returns
+     * how many URLs were found.
+     */
+    public static int cleanText(CharSequence text, StringBuilder out) {
+        return cleanText(text, out, UrlCleaner.defaultCleaner());
+    }
+
+    /** As {@link #cleanText(CharSequence, StringBuilder)}, cleaning with {@code cleaner}. */
+    public static int cleanText(CharSequence text, StringBuilder out, UrlCleaner cleaner) {
+        int length = text.length();
+        int copied = 0;
+        int found = 0;
+        int i = 0;
+        while (i < length) {
+            int schemeEnd = schemeEnd(text, i);
+            if (schemeEnd == -1) {
+                i++;
+                continue;
+            }
+            int end = urlEnd(text, i, schemeEnd);
+            if (end == schemeEnd) {
+                i = schemeEnd;
+                continue;
+            }
+            out.append(text, copied, i);
+            out.append(cleaner.clean(text.subSequence(i, end).toString()));
+            copied = end;
+            found++;
+            i = end;
+        }
+        out.append(text, copied, length);
+        return found;
+    }
+
+    /** Returns every URL in {@code text}, uncleaned, in the order they appear. */
+    public static List<String> findLinks(CharSequence text) {
+        List<String> links = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int schemeEnd = schemeEnd(text, i);
+            if (schemeEnd == -1) {
+                i++;
+                continue;
+            }
+            int end = urlEnd(text, i, schemeEnd);
+            if (end > schemeEnd) {
+                links.add(text.subSequence(i, end).toString());
+            }
+            i = end;
+        }
+        return links;
+    }
+
+    // Returns the index just past "http://" or "https://" at start, or -1.
+    private static int schemeEnd(CharSequence text, int start) {
+        char first = text.charAt(start);
+        if (first != 'h' && first != 'H') {
+            return -1;
+        }
+        if (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            return -1;
+        }
+        int i = start + 1;
+        if (!matches(text, i, "ttp")) {
+            return -1;
+        }
+        i += 3;
+        if (i < text.length() && (text.charAt(i) == 's' || text.charAt(i) == 'S')) {
+            i++;
+        }
+        return matches(text, i, "://") ? i + 3 : -1;
+    }
+
+    private static boolean matches(CharSequence text, int start, String lower) {
+        if (start + lower.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds where a URL starting at {@code start} ends: at whitespace or a
+     * character that cannot appear in a link, minus trailing sentence
+     * punctuation, closing brackets that were opened outside the link, and a
+     * trailing possessive or contraction ('s, 'd, 'll, 're, 've) after its
+     * query or fragment. One at the end of the path is kept, as titles such
+     * as McDonald's end that way.
+     */
+    private static int urlEnd(CharSequence text, int start, int schemeEnd) {
+        int parens = 0;
+        int brackets = 0;
+        int end = schemeEnd;
+        while (end < text.length()) {
+            char c = text.charAt(end);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c) ||
+                c == '<' || c == '>' || c == '"' || c == '`') {
+                break;
+            }
+            if (c == '(') {
+                parens++;
+            } else if (c == ')') {
+                parens--;
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            }
+            end++;
+        }
+        while (end > schemeEnd) {
+            char last = text.charAt(end - 1);
+            if (last == ')' && parens < 0) {
+                parens++;
+            } else if (last == ']' && brackets < 0) {
+                brackets++;
+            } else if (Character.isLetter(last)) {
+                int letters = contraction(text, schemeEnd, end);
+                if (letters == 0) {
+                    break;
+                }
+                // Prose after the link, as in "see https://x.com/a?id=1's
+                // post"; the apostrophe goes below
+                end -= letters;
+            } else if (".,;:!?'\u2019*".indexOf(last) == -1) {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    // The number of letters in a contraction that ends the link at end, if
+    // a query or fragment comes before it, else 0
+    private static int contraction(CharSequence text, int schemeEnd, int end) {
+        for (String suffix : CONTRACTIONS) {
+            int apostrophe = end - suffix.length() - 1;
+            if (apostrophe > schemeEnd && isApostrophe(text.charAt(apostrophe)) &&
+                matches(text, apostrophe + 1, suffix)) {
+                for (int i = schemeEnd; i < apostrophe; i++) {
+                    if (text.charAt(i) == '?' || text.charAt(i) == '#') {
+                        return suffix.length();
+                    }
+                }
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isApostrophe(char c) {
+        return c == '\'' || c == '\u2019';
+    }
+}
@@ -0,0 +1,735 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Removes tracking parameters from URLs, unwraps redirectors and applies
+ * rewrites, as set out by a {@link CleanerConfig}.
+ *
+ * <p>A cleaner's configuration, cache and listener form one immutable
+ * snapshot that each clean reads once. Replacing any of them swaps in a new
+ * snapshot atomically: cleans already running finish on the old one, and
+ * none waits for the swap. The static methods use {@link #defaultCleaner},
+ * which loads the bundled rule pack on first use.
+ */
+public class UrlCleaner {
+    
+    static final int MAX_UNWRAP_DEPTH = 5;
+    
+    private static final UrlCleaner DEFAULT = new UrlCleaner(new Snapshot(null, null, null, null));
+    
+    private final AtomicReference<Snapshot> snapshot;
+    
+    public UrlCleaner(CleanerConfig config) {
+        this(config, null, null);
+    }
+    
+    /** A cleaner with a result cache and a listener, either of which may be null. */
+    public UrlCleaner(CleanerConfig config, CleanCache cache, CleanListener listener) {
+        this(config, cache, null, listener);
+    }
+    
+    /** As above, with a persistent cache behind the in-memory one; any may be null. */
+    public UrlCleaner(CleanerConfig config, CleanCache cache, PersistentCache persistentCache, 
+                      CleanListener listener) {
+        this(new Snapshot(checkConfig(config), cache, persistentCache, listener));
+    }
+    
+    private UrlCleaner(Snapshot snapshot) {
+        this.snapshot = new AtomicReference<>(snapshot);
+    }
+    
+    /** The cleaner behind the static methods. */
+    public static UrlCleaner defaultCleaner() {
+        return DEFAULT;
+    }
+    
+    /**
+     * Returns {@code url} with tracking parameters removed, redirectors
+     * unwrapped and rewrites applied.
+     *
+     * <p>ASCII URLs are first scanned in place by the byte cleaner. If no
+     * redirector, rewrite or override could apply, the result is decided
+     * there without building components: {@code url} itself is returned,
+     * without allocating, when nothing would be removed, and otherwise one
+     * new string. Everything else goes through the in-memory cache, then
+     * the persistent cache, if any, and the full pipeline. With a listener
+     * installed every URL takes the full pipeline, so all are reported.
+     */
+    public String clean(String url) {
+        return snapshot().clean(url, true);
+    }
+    
+    /**
+     * Cleans one UTF-8 URL, the bytes between {@code in}'s position and
+     * limit, into {@code out} and returns the number of bytes written. The
+     * result is byte for byte that of {@link #clean(String)} on the decoded
+     * URL.
+     *
+     * <p>Most URLs are cleaned without decoding: keys are classified as
+     * bytes and kept ranges are copied straight to {@code out}. URLs that
+     * need more (redirectors, rewrites, overrides, non-ASCII text) go
+     * through the cache and the full pipeline; the others bypass both.
+     * With a listener installed every URL goes through them.
+     *
+     * @throws java.nio.BufferOverflowException if {@code out} is too small,
+     *     in which case neither buffer's position changes
+     */
+    public int clean(ByteBuffer in, ByteBuffer out) {
+        return snapshot().clean(in, out);
+    }
+    
+    /**
+     * Cleans {@code url} through the full pipeline, recording which rule
+     * did what. Bypasses the quick path, the caches and the listener; the
+     * output is what {@link #clean(String)} returns.
+     */
+    public CleanTrace explain(String url) {
+        CleanTrace.Recorder trace = new CleanTrace.Recorder(url);
+        String cleaned = url == null || url.trim().isEmpty() ? url : cleanUncached(url, snapshot().config, trace);
+        return trace.finish(cleaned);
+    }
+    
+    public CleanerConfig config() {
+        return snapshot().config;
+    }
+    
+    /**
+     * Replaces the configuration, for example with new overrides or a newer
+     * rule pack. Cleans already running finish on the old one. Clears the
+     * result cache, if any.
+     */
+    public void setConfig(CleanerConfig config) {
+        checkConfig(config);
+        update(current -> current.withConfig(config));
+    }
+    
+    /**
+     * Installs a result cache in front of {@link #cleanUrl} on the default
+     * cleaner, or removes it when {@code cache} is null. There is no cache
+     * by default.
+     */
+    public static void setCache(CleanCache cache) {
+        DEFAULT.update(current -> current.withCache(cache));
+    }
+    
+    /**
+     * Installs a persistent cache behind the default cleaner's in-memory
+     * cache, or removes it when {@code cache} is null. Closing it is up to
+     * the caller, after removing it.
+     */
+    public static void setPersistentCache(PersistentCache cache) {
+        DEFAULT.update(current -> current.withPersistentCache(cache));
+    }
+    
+    /**
+     * Installs a listener notified of stage timings and rule hits on every
+     * clean by the default cleaner that runs the full pipeline, or removes
+     * it when {@code listener} is null. While one is installed the byte
+     * quick path is skipped, so that every URL is reported; cache hits are
+     * not.
+     */
+    public static void setListener(CleanListener listener) {
+        DEFAULT.update(current -> current.withListener(listener));
+    }
+    
+    /**
+     * Replaces the rules used by {@link #cleanUrl}, for example with a newer
+     * pack mapped from disk, keeping the default cleaner's overrides.
+     * Clears the result cache, if any.
+     */
+    public static void setRulePack(RulePack pack) {
+        if (pack == null) {
+            throw new IllegalArgumentException("pack == null");
+        }
+        DEFAULT.update(current -> current.withConfig(
+            current.config != null ? current.config.withRulePack(pack) : CleanerConfig.of(pack)));
+    }
+    
+    static RulePack rulePack() {
+        return DEFAULT.config().rulePack();
+    }
+    
+    /** Cleans {@code url} with the {@link #defaultCleaner}. */
+    public static String cleanUrl(String url) {
+        return cleanUrl(url, true);
+    }
+    
+    // The full pipeline alone when quick is false, as the byte cleaner's
+    // fallback and the reference for ByteParityCheck
+    static String cleanUrl(String url, boolean quick) {
+        return DEFAULT.snapshot().clean(url, quick);
+    }
+    
+    /** Explains {@code url} with the {@link #defaultCleaner}. */
+    public static CleanTrace explainUrl(String url) {
+        return DEFAULT.explain(url);
+    }
+    
+    private Snapshot snapshot() {
+        Snapshot current = snapshot.get();
+        return current.config != null ? current : loadDefault();
+    }
+    
+    // Only the default cleaner starts without a configuration
+    private synchronized Snapshot loadDefault() {
+        Snapshot current = snapshot.get();
+        if (current.config != null) {
+            return current;
+        }
+        CleanerConfig config;
+        try {
+            config = CleanerConfig.of(RulePack.loadDefault());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return update(loaded -> loaded.config != null ? loaded : loaded.withConfig(config));
+    }
+    
+    private Snapshot update(Update update) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            Snapshot next = update.apply(current);
+            if (snapshot.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+    
+    private interface Update {
+        Snapshot apply(Snapshot current);
+    }
+    
+    private static CleanerConfig checkConfig(CleanerConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("config == null");
+        }
+        return config;
+    }
+    
+    /** A configuration with the caches and listener it runs with. */
+    static final class Snapshot {
+        final CleanerConfig config;
+        final CleanCache cache;
+        // The cache's epoch when this snapshot was made; results are only
+        // stored while it is still current
+        final long cacheEpoch;
+        final PersistentCache persistentCache;
+        final CleanListener listener;
+        final ByteCleaner bytes;
+        
+        Snapshot(CleanerConfig config, CleanCache cache, PersistentCache persistentCache, 
+                 CleanListener listener) {
+            this(config, cache, cache != null ? cache.epoch() : 0, persistentCache, listener, 
+                config != null ? new ByteCleaner(config) : null);
+        }
+        
+        private Snapshot(CleanerConfig config, CleanCache cache, long cacheEpoch, 
+                         PersistentCache persistentCache, CleanListener listener, ByteCleaner bytes) {
+            this.config = config;
+            this.cache = cache;
+            this.cacheEpoch = cacheEpoch;
+            this.persistentCache = persistentCache;
+            this.listener = listener;
+            this.bytes = bytes;
+        }
+        
+        // The persistent cache keys entries on the configuration, so it
+        // needs no clearing
+        Snapshot withConfig(CleanerConfig config) {
+            long epoch = cache != null ? cache.invalidate() : 0;
+            return new Snapshot(config, cache, epoch, persistentCache, listener, new ByteCleaner(config));
+        }
+        
+        Snapshot withCache(CleanCache cache) {
+            return new Snapshot(config, cache, cache != null ? cache.epoch() : 0, persistentCache, listener, 
+                bytes);
+        }
+        
+        Snapshot withPersistentCache(PersistentCache persistentCache) {
+            return new Snapshot(config, cache, cacheEpoch, persistentCache, listener, bytes);
+        }
+        
+        Snapshot withListener(CleanListener listener) {
+            return new Snapshot(config, cache, cacheEpoch, persistentCache, listener, bytes);
+        }
+        
+        String clean(String url, boolean quick) {
+            if (url == null || url.trim().isEmpty()) {
+                return url;
+            }
+            
+            // The quick path reports nothing, so a listener sees every URL
+            // only if it is skipped
+            if (quick && listener == null) {
+                String cleaned = bytes.clean(url);
+                if (cleaned != null) {
+                    return cleaned;
+                }
+            }
+            String cleaned = cache != null ? cache.get(url) : null;
+            if (cleaned != null) {
+                return cleaned;
+            }
+            if (persistentCache != null) {
+                cleaned = persistentCache.get(config.fingerprint(), url);
+            }
+            if (cleaned == null) {
+                cleaned = cleanUncached(url, config, listener);
+                if (persistentCache != null) {
+                    persistentCache.put(config.fingerprint(), url, cleaned, 0);
+                }
+            }
+            if (cache != null) {
+                cache.put(url, cleaned, cacheEpoch);
+            }
+            return cleaned;
+        }
+        
+        int clean(ByteBuffer in, ByteBuffer out) {
+            return bytes.clean(in, out, this);
+        }
+    }
+    
+    private static String cleanUncached(String url, CleanerConfig config, CleanListener listener) {
+        String current = url.trim();
+        try {
+            long start = listener != null ? System.nanoTime() : 0;
+            UriComponents components = parseUri(current);
+            if (listener != null) {
+                listener.onStage(CleanListener.Stage.PARSE, System.nanoTime() - start);
+            }
+            if (components == null) {
+                return current;
+            }
+            return cleanParsed(current, components, 0, config, listener);
+        } catch (Exception e) {
+            return current;
+        }
+    }
+    
+    /**
+     * Cleans {@code current}, already parsed into {@code components} and
+     * reached through {@code depth} redirectors, unwrapping any further ones.
+     */
+    static String cleanParsed(String current, UriComponents components, int depth, CleanerConfig config, 
+                              CleanListener listener) {
+        try {
+            long start = 0;
+            while (depth < MAX_UNWRAP_DEPTH) {
+                if (listener != null) {
+                    start = System.nanoTime();
+                }
+                String destination = config.redirectors().destination(components, listener);
+                if (listener != null) {
+                    listener.onStage(CleanListener.Stage.UNWRAP, System.nanoTime() - start);
+                }
+                if (destination == null || destination.equals(current)) {
+                    break;
+                }
+                depth++;
+                if (listener != null) {
+                    if (listener instanceof CleanTrace.Recorder) {
+                        ((CleanTrace.Recorder) listener).onUnwrap(destination);
+                    }
+                    start = System.nanoTime();
+                }
+                UriComponents next = parseUri(destination);
+                if (listener != null) {
+                    listener.onStage(CleanListener.Stage.PARSE, System.nanoTime() - start);
+                }
+                if (next == null) {
+                    if (listener != null) {
+                        listener.onUnwrapped(depth);
+                    }
+                    return destination;
+                }
+                current = destination;
+                components = next;
+            }
+            if (listener != null) {
+                listener.onUnwrapped(depth);
+            }
+            
+            return cleanComponents(components, config, listener);
+        } catch (Exception e) {
+            return current;
+        }
+    }
+    
+    static String cleanComponents(UriComponents components, CleanerConfig config, CleanListener listener) {
+        long start = listener != null ? System.nanoTime() : 0;
+        if (listener instanceof CleanTrace.Recorder) {
+            config.rewrites().apply(components, (CleanTrace.Recorder) listener);
+        } else {
+            components = normalizeUrl(components, config.rewrites());
+        }
+        if (listener != null) {
+            long now = System.nanoTime();
+            listener.onStage(CleanListener.Stage.NORMALIZE, now - start);
+            start = now;
+        }
+        
+        HostRules.Rule hostRule = config.hostRules().lookup(components.host);
+        CleanerConfig.HostOverride override = config.override(components.host);
+        KeyClassifier classifier = config.classifier();
+        components.queryParams = cleanQueryParams(components.queryParams, classifier, hostRule, override, listener);
+        
+        if (components.fragment != null && components.fragment.contains("=")) {
+            List<Param> fragmentParams = parseQueryString(components.fragment);
+            List<Param> cleanedFragment = cleanQueryParams(fragmentParams, classifier, hostRule, override, listener);
+            if (cleanedFragment.isEmpty()) {
+                components.fragment = null;
+            } else {
+                components.fragment = buildQueryString(cleanedFragment);
+            }
+        }
+        if (listener != null) {
+            long now = System.nanoTime();
+            listener.onStage(CleanListener.Stage.CLEAN_PARAMS, now - start);
+            listener.onHostFamily(hostRule.family);
+            start = now;
+        }
+        
+        String cleaned = buildUri(components);
+        if (listener != null) {
+            listener.onStage(CleanListener.Stage.BUILD, System.nanoTime() - start);
+        }
+        return cleaned;
+    }
+    
+    static List<Param> cleanQueryParams(List<Param> params, KeyClassifier classifier, HostRules.Rule hostRule, 
+                                        CleanListener listener) {
+        return cleanQueryParams(params, classifier, hostRule, null, listener);
+    }
+    
+    /** Cleans {@code params}, applying the user's overrides for the host, if any, over the rules. */
+    static List<Param> cleanQueryParams(List<Param> params, KeyClassifier classifier, HostRules.Rule hostRule, 
+                                        CleanerConfig.HostOverride override, CleanListener listener) {
+        List<Param> cleaned = new ArrayList<>();
+        
+        for (Param param : params) {
+            if (override != null) {
+                if (override.keeps(param)) {
+                    cleaned.add(param);
+                    continue;
+                }
+                if (override.drops(param)) {
+                    if (listener != null) {
+                        dropped(listener, param, CleanTrace.Reason.OVERRIDE, hostRule);
+                    }
+                    continue;
+                }
+            }
+            int kind = classifier.classify(param.keyText(), param.keyFrom(), param.keyTo());
+            boolean shouldDrop = kind == KeyClassifier.GLOBAL_EXACT || 
+                                 kind == KeyClassifier.GLOBAL_PREFIX || 
+                                 kind == KeyClassifier.WT_PREFIX;
+            boolean byHost = false;
+            
+            if (!shouldDrop) {
+                shouldDrop = byHost = hostRule.shouldDrop(param);
+            }
+            
+            if (!shouldDrop && kind == KeyClassifier.REDIRECT_PARAM) {
+                shouldDrop = true;
+            }
+            
+            if (!shouldDrop) {
+                cleaned.add(param);
+            } else if (listener != null) {
+                dropped(listener, param, byHost ? CleanTrace.Reason.HOST : reason(kind), hostRule);
+            }
+        }
+        
+        return cleaned;
+    }
+    
+    // Only a trace is told why; other listeners just get the key
+    private static void dropped(CleanListener listener, Param param, CleanTrace.Reason reason, 
+                                HostRules.Rule hostRule) {
+        if (listener instanceof CleanTrace.Recorder) {
+            ((CleanTrace.Recorder) listener).onDropped(param.key(), reason, hostRule.family);
+        } else {
+            listener.onDroppedKey(param.key());
+        }
+    }
+    
+    private static CleanTrace.Reason reason(int kind) {
+        switch (kind) {
+            case KeyClassifier.GLOBAL_EXACT:
+                return CleanTrace.Reason.GLOBAL_EXACT;
+            case KeyClassifier.GLOBAL_PREFIX:
+                return CleanTrace.Reason.GLOBAL_PREFIX;
+            case KeyClassifier.WT_PREFIX:
+                return CleanTrace.Reason.WT_PREFIX;
+            default:
+                return CleanTrace.Reason.REDIRECT_PARAM;
+        }
+    }
+    
+    /**
+     * Rewrites equivalent forms of a URL (youtu.be, /shorts/, /gp/product/,
+     * AMP pages, ...) to one canonical form, as described by the pack's
+     * rewrite rules.
+     */
+    static UriComponents normalizeUrl(UriComponents components, Rewrites rewrites) {
+        rewrites.apply(components);
+        return components;
+    }
+    
+    static UriComponents parseUri(String url) {
+        try {
+            UriComponents components = new UriComponents();
+            
+            int schemeEnd = url.indexOf("://");
+            if (schemeEnd == -1) {
+                return null;
+            }
+            
+            components.scheme = url.substring(0, schemeEnd);
+            String remaining = url.substring(schemeEnd + 3);
+            
+            int pathStart = remaining.indexOf("/");
+            int queryStart = remaining.indexOf("?");
+            int fragmentStart = remaining.indexOf("#");
+            
+            String authority;
+            if (pathStart != -1) {
+                authority = remaining.substring(0, pathStart);
+            } else if (queryStart != -1) {
+                authority = remaining.substring(0, queryStart);
+            } else if (fragmentStart != -1) {
+                authority = remaining.substring(0, fragmentStart);
+            } else {
+                authority = remaining;
+            }
+            
+            components.host = authority.split(":")[0];
+            if (authority.contains(":")) {
+                components.port = authority.substring(authority.indexOf(":") + 1);
+            }
+            
+            int actualPathStart = (pathStart != -1) ? pathStart : 
+                                 (queryStart != -1) ? queryStart : 
+                                 (fragmentStart != -1) ? fragmentStart : remaining.length();
+            
+            if (pathStart != -1) {
+                int pathEnd = (queryStart != -1) ? queryStart : 
+                             (fragmentStart != -1) ? fragmentStart : remaining.length();
+                components.path = remaining.substring(pathStart, pathEnd);
+            } else {
+                components.path = "/";
+            }
+            
+            if (queryStart != -1) {
+                int queryEnd = (fragmentStart != -1) ? fragmentStart : remaining.length();
+                components.queryParams = parseQueryString(remaining, queryStart + 1, queryEnd);
+            } else {
+                components.queryParams = new ArrayList<>();
+            }
+            
+            if (fragmentStart != -1) {
+                components.fragment = remaining.substring(fragmentStart + 1);
+            }
+            
+            return components;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    private static List<Param> parseQueryString(String query) {
+        return parseQueryString(query, 0, query != null ? query.length() : 0);
+    }
+    
+    static List<Param> parseQueryString(String source, int start, int end) {
+        List<Param> params = new ArrayList<>();
+        int pairStart = start;
+        int equals = -1;
+        boolean keyEncoded = false;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? source.charAt(i) : '&';
+            if (c == '=' && equals == -1) {
+                equals = i;
+            } else if (c == '&') {
+                if (i > pairStart) {
+                    params.add(new Param(source, pairStart, equals != -1 ? equals : i, 
+                        equals != -1 ? equals + 1 : -1, i, keyEncoded));
+                }
+                pairStart = i + 1;
+                equals = -1;
+                keyEncoded = false;
+            } else if ((c == '%' || c == '+') && equals == -1) {
+                keyEncoded = true;
+            }
+        }
+        return params;
+    }
+    
+    private static String buildQueryString(List<Param> params) {
+        if (params.isEmpty()) {
+            return null;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        boolean first = true;
+        for (Param param : params) {
+            if (!first) {
+                sb.append("&");
+            }
+            param.appendTo(sb);
+            first = false;
+        }
+        return sb.toString();
+    }
+    
+    static String buildUri(UriComponents components) {
+        StringBuilder sb = new StringBuilder();
+        
+        if (components.scheme != null) {
+            sb.append(components.scheme).append("://");
+        }
+        
+        if (components.host != null) {
+            sb.append(components.host);
+        }
+        
+        if (components.port != null && !components.port.isEmpty()) {
+            sb.append(":").append(components.port);
+        }
+        
+        if (components.path != null) {
+            sb.append(components.path);
+        }
+        
+        String queryStr = buildQueryString(components.queryParams);
+        if (queryStr != null && !queryStr.isEmpty()) {
+            sb.append("?").append(queryStr);
+        }
+        
+        if (components.fragment != null && !components.fragment.isEmpty()) {
+            sb.append("#").append(components.fragment);
+        }
+        
+        return sb.toString();
+    }
+    
+    static final class UriComponents {
+        String scheme;
+        String host;
+        String port;
+        String path;
+        List<Param> queryParams;
+        String fragment;
+        
+        UriComponents() {
+            queryParams = new ArrayList<>();
+        }
+    }
+    
+    /**
+     * A query parameter recorded as offsets into the string it was parsed
+     * from. Key and value are decoded only when first asked for, and an
+     * untouched parameter is written back verbatim.
+     */
+    static final class Param {
+        private final String source;
+        private final int keyStart;
+        private final int keyEnd;
+        private final int valueStart;
+        private final int end;
+        private final boolean keyEncoded;
+        private String key;
+        private String value;
+        private boolean modified;
+        
+        Param(String key, String value) {
+            this.source = null;
+            this.keyStart = this.keyEnd = this.valueStart = this.end = -1;
+            this.keyEncoded = true;
+            this.key = key;
+            this.value = value;
+            this.modified = true;
+        }
+        
+        Param(String source, int keyStart, int keyEnd, int valueStart, int end, boolean keyEncoded) {
+            this.source = source;
+            this.keyStart = keyStart;
+            this.keyEnd = keyEnd;
+            this.valueStart = valueStart;
+            this.end = end;
+            this.keyEncoded = keyEncoded;
+        }
+        
+        String key() {
+            if (key == null) {
+                key = decode(source, keyStart, keyEnd);
+            }
+            return key;
+        }
+        
+        String value() {
+            if (value == null) {
+                value = valueStart != -1 ? decode(source, valueStart, end) : "";
+            }
+            return value;
+        }
+        
+        // The decoded key as a region of keyText(). A key without escapes is
+        // read straight from the source, so classifying it allocates nothing.
+        String keyText() {
+            return keyEncoded ? key() : source;
+        }
+        
+        int keyFrom() {
+            return keyEncoded ? 0 : keyStart;
+        }
+        
+        int keyTo() {
+            return keyEncoded ? key().length() : keyEnd;
+        }
+        
+        boolean keyEquals(String name) {
+            int from = keyFrom();
+            int length = keyTo() - from;
+            return length == name.length() && keyText().regionMatches(true, from, name, 0, length);
+        }
+        
+        void setValue(String value) {
+            this.value = value;
+            this.modified = true;
+        }
+        
+        void appendTo(StringBuilder sb) {
+            if (!modified) {
+                sb.append(source, keyStart, end);
+                return;
+            }
+            try {
+                sb.append(URLEncoder.encode(key(), "UTF-8"))
+                  .append("=")
+                  .append(URLEncoder.encode(value(), "UTF-8"));
+            } catch (Exception e) {
+                sb.append(key()).append("=").append(value());
+            }
+        }
+        
+        private static String decode(String source, int start, int end) {
+            String raw = source.substring(start, end);
+            if (raw.indexOf('%') == -1 && raw.indexOf('+') == -1) {
+                return raw;
+            }
+            try {
+                return URLDecoder.decode(raw, "UTF-8");
+            } catch (Exception e) {
+                return raw;
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Checks that {@link UrlCleaner#clean(ByteBuffer, ByteBuffer)} writes
+ * exactly the UTF-8 bytes of the full {@link UrlCleaner#cleanUrl} pipeline
+ * for URLs built from every host, brand, key, redirector and rewrite in a
+ * rules file, on heap and direct buffers, and that {@code cleanUrl}'s quick
+ * path and {@link UrlCleaner#explainUrl} return the same string. Extra URL files may follow, one URL per
+ * line. Run by the {@code verifyByteParity} task.
+ */
+final class ByteParityCheck {
+
+    private static final int MAX_REPORTED = 20;
+
+    private ByteParityCheck() {
+    }
+
+    /** Usage: {@code ByteParityCheck <trackers.rules> [urls.txt...]} */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: ByteParityCheck <rules> [urls...]");
+            System.exit(2);
+        }
+        RulePackCompiler.Source source;
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            source = RulePackCompiler.parse(reader);
+        }
+        // Check the rules as written, not whatever pack happens to be bundled
+        UrlCleaner.setRulePack(RulePack.load(ByteBuffer.wrap(RulePackCompiler.compile(source))));
+
+        Set<String> urls = urls(source);
+        for (int i = 1; i < args.length; i++) {
+            urls.addAll(Files.readAllLines(Paths.get(args[i]), StandardCharsets.UTF_8));
+        }
+        int failures = 0;
+        for (String url : urls) {
+            String expected = UrlCleaner.cleanUrl(url, false);
+            String quick = UrlCleaner.cleanUrl(url);
+            if (!quick.equals(expected) && ++failures <= MAX_REPORTED) {
+                System.err.printf("quick path: %s%n  expected %s%n  actual   %s%n", url, expected, quick);
+            }
+            String explained = UrlCleaner.explainUrl(url).output();
+            if (!explained.equals(expected) && ++failures <= MAX_REPORTED) {
+                System.err.printf("explain: %s%n  expected %s%n  actual   %s%n", url, expected, explained);
+            }
+            for (boolean direct : new boolean[] {false, true}) {
+                String actual = cleanBytes(url, direct);
+                if (!actual.equals(expected)) {
+                    if (++failures <= MAX_REPORTED) {
+                        System.err.printf("%s buffer: %s%n  expected %s%n  actual   %s%n",
+                            direct ? "direct" : "heap", url, expected, actual);
+                    }
+                }
+            }
+        }
+        System.out.printf("%d URLs, %d mismatches%n", urls.size(), failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String cleanBytes(String url, boolean direct) {
+        byte[] utf8 = url.getBytes(StandardCharsets.UTF_8);
+        // Offset the URL inside both buffers to exercise position handling
+        ByteBuffer in = direct ? ByteBuffer.allocateDirect(utf8.length + 3) : ByteBuffer.allocate(utf8.length + 3);
+        in.put(new byte[] {'x', 'y', 'z'}).put(utf8).flip().position(3);
+        ByteBuffer out = direct ? ByteBuffer.allocateDirect(utf8.length * 3 + 16) : ByteBuffer.allocate(utf8.length * 3 + 16);
+        out.put((byte) '!');
+        int written = UrlCleaner.defaultCleaner().clean(in.slice(), out);
+        if (out.position() != written + 1) {
+            throw new IllegalStateException("position " + out.position() + " after writing " + written);
+        }
+        byte[] result = new byte[written];
+        out.flip().position(1);
+        out.get(result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> urls(RulePackCompiler.Source source) {
+        Set<String> hosts = new LinkedHashSet<>();
+        hosts.add("example.com");
+        hosts.add("EXAMPLE.COM");
+        List<String> keys = new ArrayList<>();
+        keys.addAll(source.global.drop);
+        keys.addAll(source.global.redirectParams);
+        for (String prefix : source.global.dropPrefixes) {
+            keys.add(prefix + "x");
+        }
+        for (String prefix : source.global.wtPrefixes) {
+            keys.add(prefix + "x");
+        }
+        for (RulePackCompiler.HostSection host : source.hosts) {
+            for (String name : host.names) {
+                if (host.brand) {
+                    hosts.add("www." + name + ".com");
+                    hosts.add(name + ".co.uk");
+                } else {
+                    hosts.add(name);
+                    hosts.add("www." + name);
+                }
+            }
+            keys.addAll(host.keep);
+            keys.addAll(host.drop);
+            keys.addAll(host.keepIfValueContainsKeys);
+            for (String prefix : host.dropPrefixes) {
+                keys.add(prefix + "x");
+            }
+            if (!host.longValuePrefix.isEmpty()) {
+                keys.add(host.longValuePrefix + "x");
+            }
+        }
+        Set<String> paths = new LinkedHashSet<>();
+        paths.add("");
+        paths.add("/");
+        paths.add("/a/b/");
+        for (RulePackCompiler.RedirectorSection redirector : source.redirectors) {
+            hosts.addAll(redirector.domains);
+            for (String brand : redirector.brands) {
+                hosts.add("www." + brand + ".com");
+            }
+            for (String label : redirector.labels) {
+                hosts.add(label + ".example.com");
+            }
+            keys.addAll(redirector.params);
+            paths.addAll(redirector.paths);
+        }
+        for (RulePackCompiler.RewriteSection rewrite : source.rewrites) {
+            hosts.addAll(rewrite.domains);
+            for (String brand : rewrite.brands) {
+                hosts.add("www." + brand + ".de");
+            }
+            for (String host : rewrite.hosts) {
+                hosts.add(host.replaceAll("\\{[^}]*}", "en"));
+            }
+            if (!rewrite.path.isEmpty()) {
+                String path = rewrite.path.replaceAll("\\{[^}]*}", "B0abc").replace("**", "x");
+                paths.add(path);
+                paths.add(path + "/");
+            }
+            for (String segment : rewrite.dropPathSegments) {
+                paths.add("/" + segment);
+                paths.add("/news/" + segment + "/story");
+                paths.add("/news/" + segment + "ed");
+            }
+            for (int i = 0; i + 1 < rewrite.dropParamsIfValue.size(); i += 2) {
+                keys.add(rewrite.dropParamsIfValue.get(i));
+            }
+            keys.addAll(rewrite.fragmentParams);
+        }
+
+        Set<String> urls = new LinkedHashSet<>();
+        String destination = "https%3A%2F%2Fexample.org%2Fa%3Futm_source%3Dx%26id%3D1";
+        for (String host : hosts) {
+            for (String path : paths) {
+                String base = "https://" + host + path;
+                urls.add(base);
+                urls.add(base + "?id=1&utm_source=x#top");
+                urls.add(base + "#t=30");
+            }
+            String base = "https://" + host + "/p";
+            for (String key : keys) {
+                urls.add(base + "?" + key + "=v&id=1");
+                urls.add(base + "?id=1&" + key.toUpperCase(Locale.ROOT) + "=shareable_link");
+                urls.add(base + "?" + key + "=" + destination);
+                urls.add(base + "?" + key + "=" + "a%20b+c" + "0123456789abcdef");
+                urls.add(base + "?" + key + "&" + key + "=#" + key + "=1&x=2");
+                urls.add(base + "?" + key + "=amp");
+            }
+        }
+        String[] odd = {
+            "", "   ", " \thttps://example.com/p?utm_source=x \n", "example.com/p?utm_source=x",
+            "https://", "https://:80/p?fbclid=1", "https://:/p", "https://example.com:/p?fbclid=1",
+            "https://example.com:8443?fbclid=1&a=2", "https://example.com?x=1/2&fbclid=3",
+            "https://example.com/p#a?b=1", "https://example.com#frag/x", "https://example.com/p?&&a=1&&",
+            "https://example.com/p?a=1#", "https://example.com/p?#fbclid=1", "https://example.com/p?=1&=&a",
+            "https://example.com/\u00fcber?utm_source=x", "https://example.com/p?q=caf\u00e9&fbclid=1",
+            "https://example.com/p?utm%5Fsource=x", "https://example.com/p?utm+source=x",
+            "https://example.com/p?%zz=1&fbclid=2", "https://example.com/p?a=%zz&gclid=2",
+            "HTTPS://EXAMPLE.COM/P?UTM_SOURCE=X", "https://example.com/p\u0001?fbclid=1",
+        };
+        for (String url : odd) {
+            urls.add(url);
+        }
+        return urls;
+    }
+}
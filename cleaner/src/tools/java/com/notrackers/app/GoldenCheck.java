@@ -0,0 +1,73 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Checks {@link UrlCleaner#cleanUrl} against a golden file of URLs, and
+ * {@link TextCleaner#cleanText} against one of shared text. Each input is
+ * followed by its expected cleaned form on a line starting {@code "  -> "};
+ * lines starting with {@code #} and blank lines are skipped. Run by the
+ * {@code verifyGolden} task.
+ */
+final class GoldenCheck {
+
+    private static final String EXPECTED = "  -> ";
+
+    private GoldenCheck() {
+    }
+
+    /** Usage: {@code GoldenCheck <trackers.rules> <urls.txt> <text.txt>} */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: GoldenCheck <rules> <urls> <text>");
+            System.exit(2);
+        }
+        RulePackCompiler.Source source;
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            source = RulePackCompiler.parse(reader);
+        }
+        UrlCleaner.setRulePack(RulePack.load(ByteBuffer.wrap(RulePackCompiler.compile(source))));
+
+        int failures = check(args[1], UrlCleaner::cleanUrl) + check(args[2], TextCleaner::cleanText);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Returns the number of inputs in file that clean to something else
+    private static int check(String file, UnaryOperator<String> cleaner) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        int checked = 0;
+        int failures = 0;
+        String input = null;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.startsWith(EXPECTED) && input != null) {
+                String expected = line.substring(EXPECTED.length());
+                String actual = cleaner.apply(input);
+                if (!actual.equals(expected)) {
+                    failures++;
+                    System.err.printf("%s:%d: %s%n  expected %s%n  actual   %s%n", file, i + 1, input, expected, actual);
+                }
+                checked++;
+                input = null;
+            } else if (line.startsWith(EXPECTED) || input != null) {
+                throw new IllegalArgumentException(file + ":" + (i + 1) + ": expected an input then its cleaned form");
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                input = line;
+            }
+        }
+        if (input != null) {
+            throw new IllegalArgumentException(file + ":" + lines.size() + ": " + input + " has no cleaned form");
+        }
+        System.out.printf("%s: %d inputs, %d mismatches%n", Paths.get(file).getFileName(), checked, failures);
+        return failures;
+    }
+}
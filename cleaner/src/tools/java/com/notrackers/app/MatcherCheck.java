@@ -0,0 +1,175 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that the {@link GeneratedMatcher} the build made from a rules file
+ * is the one the bundled pack uses, and that it classifies keys and
+ * resolves hosts exactly as the {@link KeyClassifier} and {@link HostRules}
+ * tables do: over every key and host in the rules, their case, length and
+ * label variants, and random keys. Run by the {@code verifyMatcher} task.
+ */
+final class MatcherCheck {
+
+    private static final int MAX_REPORTED = 20;
+    private static final int RANDOM_KEYS = 100_000;
+
+    private MatcherCheck() {
+    }
+
+    /** Usage: {@code MatcherCheck <trackers.rules>} */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: MatcherCheck <rules>");
+            System.exit(2);
+        }
+        RulePackCompiler.Source source;
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            source = RulePackCompiler.parse(reader);
+        }
+        byte[] bytes = RulePackCompiler.compile(source);
+        RulePack generated = RulePack.load(ByteBuffer.wrap(bytes));
+        RulePack interpreted = RulePack.loadInterpreted(ByteBuffer.wrap(bytes));
+        if (generated.fingerprint() != GeneratedMatcher.PACK_FINGERPRINT) {
+            System.err.println("GeneratedMatcher was generated from other rules than " + args[0]);
+            System.exit(1);
+        }
+
+        int failures = 0;
+        Set<String> keys = keys(source);
+        for (String key : keys) {
+            int want = interpreted.classifier().classify(key, 0, key.length());
+            int got = generated.classifier().classify(key, 0, key.length());
+            if (got != want && ++failures <= MAX_REPORTED) {
+                System.err.printf("key %s: tables %d, generated %d%n", key, want, got);
+            }
+            if (isAscii(key)) {
+                // Offset the key inside the array to exercise from/to
+                byte[] ascii = ("xx" + key + "yy").getBytes(StandardCharsets.US_ASCII);
+                want = interpreted.classifier().classify(ascii, 2, ascii.length - 2);
+                got = generated.classifier().classify(ascii, 2, ascii.length - 2);
+                if (got != want && ++failures <= MAX_REPORTED) {
+                    System.err.printf("key bytes %s: tables %d, generated %d%n", key, want, got);
+                }
+            }
+        }
+        Set<String> hosts = hosts(source);
+        for (String host : hosts) {
+            String want = interpreted.hostRules().lookup(host).family;
+            String got = generated.hostRules().lookup(host).family;
+            if (!got.equals(want) && ++failures <= MAX_REPORTED) {
+                System.err.printf("host %s: tables %s, generated %s%n", host, want, got);
+            }
+        }
+        System.out.printf("%d keys, %d hosts, %d mismatches%n", keys.size(), hosts.size(), failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Set<String> keys(RulePackCompiler.Source source) {
+        List<String> seeds = new ArrayList<>();
+        seeds.addAll(source.global.drop);
+        seeds.addAll(source.global.dropPrefixes);
+        seeds.addAll(source.global.wtPrefixes);
+        seeds.addAll(source.global.redirectParams);
+        for (RulePackCompiler.HostSection host : source.hosts) {
+            seeds.addAll(host.keep);
+            seeds.addAll(host.drop);
+            seeds.addAll(host.dropPrefixes);
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add("");
+        for (String seed : seeds) {
+            keys.add(seed);
+            keys.add(seed.toUpperCase(Locale.ROOT));
+            keys.add(mixedCase(seed));
+            keys.add(seed + "x");
+            keys.add(seed + "_id");
+            keys.add("x" + seed);
+            for (int i = 0; i < seed.length(); i++) {
+                keys.add(seed.substring(0, i));
+                keys.add(seed.substring(0, i) + '\u0000' + seed.substring(i + 1));
+            }
+            // Characters that fold or case-compare to ASCII letters
+            keys.add(seed.replace('k', '\u212A').replace('i', '\u0130'));
+            keys.add(seed.replace('i', '\u0131').replace('s', '\u017F'));
+        }
+        Random random = new Random(42);
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_.-";
+        for (int i = 0; i < RANDOM_KEYS; i++) {
+            char[] key = new char[random.nextInt(14)];
+            for (int j = 0; j < key.length; j++) {
+                key[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            keys.add(new String(key));
+        }
+        return keys;
+    }
+
+    private static Set<String> hosts(RulePackCompiler.Source source) {
+        Set<String> hosts = new LinkedHashSet<>();
+        for (RulePackCompiler.HostSection section : source.hosts) {
+            for (String name : section.names) {
+                List<String> bases = new ArrayList<>();
+                if (section.brand) {
+                    bases.add(name + ".com");
+                    bases.add(name + ".co.uk");
+                    bases.add(name + ".com.kw");
+                    bases.add(name + ".evil.com");
+                    bases.add("evil." + name);
+                    bases.add(name);
+                } else {
+                    bases.add(name);
+                    bases.add(name.substring(name.indexOf('.') + 1));
+                    bases.add(name + ".evil.com");
+                    bases.add("x" + name);
+                    bases.add(name.substring(1));
+                }
+                for (String base : bases) {
+                    hosts.add(base);
+                    hosts.add("www." + base);
+                    hosts.add("a.b." + base);
+                    hosts.add(base.toUpperCase(Locale.ROOT));
+                    hosts.add(mixedCase(base));
+                    hosts.add("." + base);
+                    hosts.add(base + ".");
+                    hosts.add(base.replace('i', '\u0131'));
+                }
+            }
+        }
+        hosts.add("example.com");
+        hosts.add("com");
+        hosts.add(".");
+        hosts.add("..");
+        return hosts;
+    }
+
+    private static String mixedCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i += 2) {
+            chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Checks that a {@link CleanMetrics} listener counts URLs the byte quick
+ * path would otherwise decide, through both {@link UrlCleaner#cleanUrl}
+ * and the byte API. Run by the {@code verifyMetrics} task.
+ */
+final class MetricsCheck {
+
+    // Decided by the quick path: no redirector, rewrite or override applies
+    private static final String URL = "https://shop.example.com/item?utm_source=news&id=7";
+    private static final String CLEANED = "https://shop.example.com/item?id=7";
+
+    private MetricsCheck() {
+    }
+
+    /** Usage: {@code MetricsCheck <trackers.rules>} */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: MetricsCheck <rules>");
+            System.exit(2);
+        }
+        RulePackCompiler.Source source;
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            source = RulePackCompiler.parse(reader);
+        }
+        RulePack pack = RulePack.load(ByteBuffer.wrap(RulePackCompiler.compile(source)));
+        UrlCleaner.setRulePack(pack);
+
+        int failures = 0;
+        if (!CLEANED.equals(new ByteCleaner(CleanerConfig.of(pack)).clean(URL))) {
+            failures++;
+            System.err.println(URL + " is not decided by the quick path; pick another URL");
+        }
+
+        CleanMetrics metrics = new CleanMetrics();
+        UrlCleaner.setListener(metrics);
+        try {
+            failures += check("cleanUrl", UrlCleaner.cleanUrl(URL), metrics);
+            metrics.reset();
+            ByteBuffer out = ByteBuffer.allocate(256);
+            UrlCleaner.defaultCleaner().clean(ByteBuffer.wrap(URL.getBytes(StandardCharsets.UTF_8)), out);
+            String cleaned = new String(out.array(), 0, out.position(), StandardCharsets.UTF_8);
+            failures += check("clean(ByteBuffer, ByteBuffer)", cleaned, metrics);
+        } finally {
+            UrlCleaner.setListener(null);
+        }
+        System.out.printf("metrics: %d failures%n", failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Returns the number of counters that missed the clean
+    private static int check(String via, String cleaned, CleanMetrics metrics) {
+        int failures = 0;
+        if (!CLEANED.equals(cleaned)) {
+            failures++;
+            System.err.printf("%s: %s cleaned to %s, expected %s%n", via, URL, cleaned, CLEANED);
+        }
+        Map<String, Long> counts = metrics.snapshot();
+        long hosts = 0;
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            if (count.getKey().startsWith("host.")) {
+                hosts += count.getValue();
+            }
+        }
+        String[] required = {"stage.parse.count", "stage.clean_params.count", "dropped.utm_source"};
+        for (String name : required) {
+            Long count = counts.get(name);
+            if (count == null || count == 0) {
+                failures++;
+                System.err.printf("%s: %s not counted%n", via, name);
+            }
+        }
+        if (hosts == 0) {
+            failures++;
+            System.err.printf("%s: no host family counted%n", via);
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,316 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cleans a newline-delimited URL file, one URL per line, into another, in
+ * line order. The input is cut into chunks on line boundaries and chunks
+ * are cleaned in parallel with {@link UrlCleaner#clean(ByteBuffer, ByteBuffer)},
+ * so URLs are never decoded into strings unless a rule needs it.
+ *
+ * <p>At most two chunks per thread are in flight, and chunk buffers are
+ * off-heap: files are memory-mapped a chunk at a time, and streamed input
+ * and all output go through a fixed pool of direct buffers. Heap use
+ * therefore does not grow with the input.
+ */
+final class BulkCleaner {
+
+    // Bytes mapped at a time while looking for the end of a chunk's last line
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    private final int threads;
+    private final int chunkSize;
+    private final int window;
+
+    BulkCleaner(int threads, int chunkSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads < 1: " + threads);
+        }
+        if (chunkSize < 1024) {
+            throw new IllegalArgumentException("chunk size below 1 KiB: " + chunkSize);
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.window = threads * 2;
+    }
+
+    /** Cleans a file, memory-mapping it one chunk at a time. */
+    Result clean(FileChannel input, WritableByteChannel output) throws IOException {
+        long size = input.size();
+        return run(new ChunkSource() {
+            private long position = input.position();
+
+            @Override
+            public ByteBuffer next() throws IOException {
+                if (position >= size) {
+                    return null;
+                }
+                long end = Math.min(position + chunkSize, size);
+                if (end < size) {
+                    end = lineEnd(input, end, size);
+                }
+                if (end - position > Integer.MAX_VALUE) {
+                    throw new IOException("line at offset " + position + " is longer than 2 GiB");
+                }
+                MappedByteBuffer chunk = input.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+                position = end;
+                return chunk;
+            }
+
+            @Override
+            public void release(ByteBuffer chunk) {
+                // Unmapped when collected
+            }
+        }, output);
+    }
+
+    /** Cleans a stream such as stdin, reading it into pooled chunk buffers. */
+    Result clean(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+        return run(new StreamSource(input), output);
+    }
+
+    private Result run(ChunkSource source, WritableByteChannel output) throws IOException {
+        AtomicInteger workers = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "bulk-clean-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Taken before each submit and returned once written, so the window
+        // always leaves one free
+        BlockingQueue<ByteBuffer> outputs = new ArrayBlockingQueue<>(window);
+        for (int i = 0; i < window; i++) {
+            outputs.add(ByteBuffer.allocateDirect(chunkSize + chunkSize / 4));
+        }
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        long start = System.nanoTime();
+        long lines = 0;
+        long bytes = 0;
+        try {
+            while (true) {
+                if (pending.size() == window) {
+                    lines += write(pending.poll(), output, source, outputs);
+                }
+                ByteBuffer in = source.next();
+                if (in == null) {
+                    break;
+                }
+                bytes += in.remaining();
+                ByteBuffer out = outputs.remove();
+                pending.add(executor.submit(() -> cleanChunk(in, out)));
+            }
+            while (!pending.isEmpty()) {
+                lines += write(pending.poll(), output, source, outputs);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(lines, bytes, System.nanoTime() - start);
+    }
+
+    private static int write(Future<Chunk> future, WritableByteChannel output, ChunkSource source,
+                             BlockingQueue<ByteBuffer> outputs) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        while (chunk.out.hasRemaining()) {
+            output.write(chunk.out);
+        }
+        source.release(chunk.in);
+        outputs.add(chunk.out);
+        return chunk.lines;
+    }
+
+    // Cleans each line of in into out, growing out if the cleaned lines
+    // do not fit, and returns out ready to write
+    private static Chunk cleanChunk(ByteBuffer in, ByteBuffer out) {
+        out.clear();
+        UrlCleaner cleaner = UrlCleaner.defaultCleaner();
+        ByteBuffer line = in.duplicate();
+        int position = in.position();
+        int limit = in.limit();
+        int lines = 0;
+        while (position < limit) {
+            int end = position;
+            while (end < limit && in.get(end) != '\n') {
+                end++;
+            }
+            // CRLF ends a line too
+            int lineEnd = end > position && in.get(end - 1) == '\r' ? end - 1 : end;
+            line.limit(lineEnd).position(position);
+            while (true) {
+                try {
+                    cleaner.clean(line, out);
+                    break;
+                } catch (BufferOverflowException e) {
+                    out = grow(out, line.remaining());
+                }
+            }
+            if (!out.hasRemaining()) {
+                out = grow(out, 1);
+            }
+            out.put((byte) '\n');
+            lines++;
+            position = end + 1;
+        }
+        out.flip();
+        return new Chunk(in, out, lines);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.capacity() + needed * 4));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    // Returns the offset just past the first '\n' at or after from, or size
+    private static long lineEnd(FileChannel input, long from, long size) throws IOException {
+        for (long at = from; at < size; at += SCAN_WINDOW) {
+            int length = (int) Math.min(SCAN_WINDOW, size - at);
+            MappedByteBuffer scan = input.map(FileChannel.MapMode.READ_ONLY, at, length);
+            for (int i = 0; i < length; i++) {
+                if (scan.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    private interface ChunkSource {
+        /** The next chunk, ending after a '\n' or at end of input; null when done. */
+        ByteBuffer next() throws IOException;
+
+        /** Called once a chunk's output has been written. */
+        void release(ByteBuffer chunk);
+    }
+
+    private final class StreamSource implements ChunkSource {
+        private final ReadableByteChannel input;
+        // One more than the window, so a chunk can be filled while the window is full
+        private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(window + 1);
+        // The unterminated tail of the previous read
+        private ByteBuffer carry = ByteBuffer.allocateDirect(chunkSize);
+        private boolean eof;
+
+        StreamSource(ReadableByteChannel input) {
+            this.input = input;
+            for (int i = 0; i <= window; i++) {
+                free.add(ByteBuffer.allocateDirect(chunkSize));
+            }
+            carry.flip();
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if (eof && !carry.hasRemaining()) {
+                return null;
+            }
+            ByteBuffer chunk = free.remove();
+            chunk.clear();
+            if (chunk.capacity() < carry.remaining()) {
+                chunk = ByteBuffer.allocateDirect(carry.remaining() * 2);
+            }
+            chunk.put(carry);
+            while (true) {
+                while (!eof && chunk.hasRemaining()) {
+                    eof = input.read(chunk) == -1;
+                }
+                int end = chunk.position();
+                if (!eof) {
+                    while (end > 0 && chunk.get(end - 1) != '\n') {
+                        end--;
+                    }
+                }
+                if (end > 0 || eof) {
+                    int read = chunk.position();
+                    carry.clear();
+                    if (carry.capacity() < read - end) {
+                        carry = ByteBuffer.allocateDirect(read - end);
+                    }
+                    chunk.limit(read).position(end);
+                    carry.put(chunk).flip();
+                    chunk.position(0).limit(end);
+                    if (end == 0) {
+                        free.add(chunk);
+                        return null;
+                    }
+                    return chunk;
+                }
+                // One line fills the whole buffer
+                ByteBuffer grown = ByteBuffer.allocateDirect(chunk.capacity() * 2);
+                chunk.flip();
+                grown.put(chunk);
+                chunk = grown;
+            }
+        }
+
+        @Override
+        public void release(ByteBuffer chunk) {
+            free.add(chunk);
+        }
+    }
+
+    private static final class Chunk {
+        final ByteBuffer in;
+        final ByteBuffer out;
+        final int lines;
+
+        Chunk(ByteBuffer in, ByteBuffer out, int lines) {
+            this.in = in;
+            this.out = out;
+            this.lines = lines;
+        }
+    }
+
+    static final class Result {
+        final long lines;
+        final long bytes;
+        final long elapsedNanos;
+
+        Result(long lines, long bytes, long elapsedNanos) {
+            this.lines = lines;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double linesPerSecond() {
+            return lines * 1e9 / elapsedNanos;
+        }
+
+        double megabytesPerSecond() {
+            return bytes / 1e6 * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lines, %.1f MB in %.2f s%n%.0f lines/s, %.1f MB/s",
+                lines, bytes / 1e6, elapsedNanos / 1e9, linesPerSecond(), megabytesPerSecond());
+        }
+    }
+}
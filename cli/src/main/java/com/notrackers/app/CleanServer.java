@@ -0,0 +1,344 @@
+package com.notrackers.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP front end for {@link UrlCleaner}, for services that cannot link
+ * the library. Built on the JDK's NIO-based HTTP server, which keeps
+ * connections alive between requests. Requests run on a fixed pool with a
+ * bounded queue; once the queue is full, new requests wait in the socket
+ * backlog rather than on the heap.
+ *
+ * <pre>
+ * GET  /clean?url=...  the cleaned URL as text/plain
+ * POST /clean          body is one URL; the cleaned URL as text/plain
+ * POST /batch          newline-delimited or JSON-array body; results are
+ *                      streamed back in the same shape and order
+ * GET  /health         "ok"
+ * </pre>
+ * A URL longer than {@link #MAX_URL_LENGTH} is refused, with 413 for
+ * {@code POST /clean} and 400 in a batch, so no request can make the
+ * server buffer more than that.
+ *
+ * <p>Set {@code -Dsun.net.httpserver.nodelay=true} before the first server
+ * starts: responses are small and latency-bound, and without it Nagle's
+ * algorithm meets the client's delayed ACK on every keep-alive request.
+ * {@link CleanerCli} does this.
+ */
+public final class CleanServer {
+
+    // URLs read and cleaned together before their results are streamed out
+    static final int BATCH_CHUNK = 1024;
+
+    /** Longest URL accepted, in bytes for {@code POST /clean} and characters in a batch. */
+    static final int MAX_URL_LENGTH = 64 * 1024;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+
+    public CleanServer(InetSocketAddress address, int threads, int queueCapacity) throws IOException {
+        AtomicInteger workers = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            task -> {
+                Thread thread = new Thread(task, "clean-server-" + workers.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (task, pool) -> {
+                // Hold the dispatcher until a slot frees up
+                try {
+                    pool.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException(e);
+                }
+            });
+        server = HttpServer.create(address, queueCapacity);
+        server.setExecutor(executor);
+        server.createContext("/clean", this::handleClean);
+        server.createContext("/batch", this::handleBatch);
+        server.createContext("/health", exchange -> respond(exchange, 200, "ok"));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** Stops accepting requests, waiting up to {@code delaySeconds} for in-flight ones. */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void handleClean(HttpExchange exchange) throws IOException {
+        String url;
+        if ("GET".equals(exchange.getRequestMethod())) {
+            url = queryParam(exchange.getRequestURI().getRawQuery(), "url");
+            if (url == null) {
+                respond(exchange, 400, "missing url parameter");
+                return;
+            }
+        } else if ("POST".equals(exchange.getRequestMethod())) {
+            url = readBody(exchange, MAX_URL_LENGTH);
+            if (url == null) {
+                respond(exchange, 413, "URL longer than " + MAX_URL_LENGTH + " bytes");
+                return;
+            }
+            url = url.trim();
+        } else {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            respond(exchange, 405, "method not allowed");
+            return;
+        }
+        respond(exchange, 200, UrlCleaner.cleanUrl(url));
+    }
+
+    /**
+     * Reads the body {@link #BATCH_CHUNK} URLs at a time, cleans each chunk
+     * with {@link BatchCleaner} and streams its results before reading on,
+     * so memory stays flat however large the batch. A malformed body is
+     * answered with 400 if nothing has been sent yet; otherwise the response
+     * is cut short.
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, "method not allowed");
+            return;
+        }
+        PushbackReader body = new PushbackReader(new BufferedReader(
+            new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)));
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean json = (contentType != null && contentType.contains("json")) || Json.startsWithArray(body);
+        BatchReader reader = json ? new JsonBatchReader(body) : new LineBatchReader(body);
+
+        List<String> chunk = new ArrayList<>(BATCH_CHUNK);
+        Writer out = null;
+        boolean first = true;
+        try {
+            while (reader.read(chunk)) {
+                List<String> cleaned = BatchCleaner.cleanAll(chunk);
+                if (out == null) {
+                    exchange.getResponseHeaders().set("Content-Type",
+                        json ? "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+                    exchange.sendResponseHeaders(200, 0);
+                    out = new BufferedWriter(new OutputStreamWriter(
+                        exchange.getResponseBody(), StandardCharsets.UTF_8));
+                    if (json) {
+                        out.write('[');
+                    }
+                }
+                for (String url : cleaned) {
+                    if (json) {
+                        if (!first) {
+                            out.write(',');
+                        }
+                        Json.writeString(url, out);
+                    } else {
+                        out.write(url);
+                        out.write('\n');
+                    }
+                    first = false;
+                }
+                // A short chunk is the last one, and close() sends it with the
+                // terminating chunk in one segment instead of two
+                if (chunk.size() == BATCH_CHUNK) {
+                    out.flush();
+                }
+                chunk.clear();
+            }
+        } catch (IllegalArgumentException e) {
+            if (out == null) {
+                respond(exchange, 400, e.getMessage());
+            } else {
+                exchange.close();
+            }
+            return;
+        }
+        if (out == null) {
+            respond(exchange, 200, json ? "[]" : "");
+            return;
+        }
+        if (json) {
+            out.write(']');
+        }
+        out.close();
+    }
+
+    private static String queryParam(String rawQuery, String name) throws IOException {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq == name.length() && pair.startsWith(name)) {
+                try {
+                    return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                } catch (IllegalArgumentException e) {
+                    return pair.substring(eq + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    // The body as UTF-8, or null if it is longer than limit bytes. A declared
+    // Content-Length over the limit is refused before reading anything.
+    private static String readBody(HttpExchange exchange, int limit) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null) {
+            try {
+                if (Long.parseLong(declared.trim()) > limit) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                // Let the server's own framing deal with it
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > limit) {
+                    return null;
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private interface BatchReader {
+        /** Adds up to {@link #BATCH_CHUNK} URLs to {@code chunk}; false once the body is exhausted. */
+        boolean read(List<String> chunk) throws IOException;
+    }
+
+    /**
+     * One URL per line; blank lines are echoed so results line up with the
+     * input. Lines end at \n, \r or \r\n, as with BufferedReader, and one
+     * longer than {@link #MAX_URL_LENGTH} is refused before it is buffered.
+     */
+    private static final class LineBatchReader implements BatchReader {
+        private final Reader body;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        // The last line ended at \r, so a \n straight after it is part of that
+        private boolean skipNewline;
+
+        LineBatchReader(Reader body) {
+            this.body = body;
+        }
+
+        @Override
+        public boolean read(List<String> chunk) throws IOException {
+            String line;
+            while (chunk.size() < BATCH_CHUNK && (line = readLine()) != null) {
+                chunk.add(line);
+            }
+            return !chunk.isEmpty();
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = null;
+            while (true) {
+                if (position == limit) {
+                    position = 0;
+                    limit = Math.max(body.read(buffer), 0);
+                    if (limit == 0) {
+                        return line == null ? null : line.toString();
+                    }
+                }
+                if (skipNewline) {
+                    skipNewline = false;
+                    if (buffer[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                    position++;
+                }
+                if ((line == null ? 0 : line.length()) + position - start > MAX_URL_LENGTH) {
+                    throw new IllegalArgumentException("URL longer than " + MAX_URL_LENGTH + " characters");
+                }
+                if (position < limit) {
+                    skipNewline = buffer[position] == '\r';
+                    int end = position++;
+                    return line == null ? new String(buffer, start, end - start)
+                        : line.append(buffer, start, end - start).toString();
+                }
+                if (line == null) {
+                    line = new StringBuilder();
+                }
+                line.append(buffer, start, position - start);
+            }
+        }
+    }
+
+    private static final class JsonBatchReader implements BatchReader {
+        private final PushbackReader body;
+        private boolean started;
+        private boolean done;
+
+        JsonBatchReader(PushbackReader body) {
+            this.body = body;
+        }
+
+        @Override
+        public boolean read(List<String> chunk) throws IOException {
+            if (!started) {
+                Json.expect(body, '[');
+                started = true;
+                done = Json.skipIf(body, ']');
+            }
+            while (!done && chunk.size() < BATCH_CHUNK) {
+                chunk.add(Json.readString(body, MAX_URL_LENGTH));
+                if (!Json.skipIf(body, ',')) {
+                    Json.expect(body, ']');
+                    done = true;
+                }
+            }
+            return !chunk.isEmpty();
+        }
+    }
+}
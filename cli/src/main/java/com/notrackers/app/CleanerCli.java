@@ -0,0 +1,210 @@
+package com.notrackers.app;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line entry point for using the cleaner outside the Android app.
+ *
+ * <pre>
+ * serve    [--host 127.0.0.1] [--port 8080] [--threads N] [--queue 1024]
+ * loadtest [--target http://host:port] [--clients N] [--batch 100]
+ *          [--warmup 3] [--seconds 10] [--input urls.txt]
+ * bulk     [--input FILE|-] [--output FILE|-] [--threads N] [--chunk-mb 8]
+ * resolve  [--input FILE|-] [--threads 8] [--per-host 4] [--timeout-ms 3000]
+ * </pre>
+ * Without {@code --target}, {@code loadtest} starts a server on a loopback
+ * port and drives that. {@code bulk} reads stdin and writes stdout by
+ * default, and reports its throughput on stderr. {@code resolve} cleans
+ * one URL per input line, following shortener redirects over the network.
+ */
+public final class CleanerCli {
+
+    private static final String USAGE = String.join("\n",
+        "usage: notrackers <command> [options]",
+        "  serve     [--host 127.0.0.1] [--port 8080] [--threads N] [--queue 1024]",
+        "  loadtest  [--target URL] [--clients N] [--batch 100] [--warmup 3]",
+        "            [--seconds 10] [--input FILE]",
+        "  bulk      [--input FILE|-] [--output FILE|-] [--threads N] [--chunk-mb 8]",
+        "  resolve   [--input FILE|-] [--threads 8] [--per-host 4] [--timeout-ms 3000]");
+
+    private CleanerCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            exit(USAGE);
+        }
+        Map<String, String> options = options(args);
+        switch (args[0]) {
+            case "serve":
+                serve(options);
+                break;
+            case "loadtest":
+                loadTest(options);
+                break;
+            case "bulk":
+                bulk(options);
+                break;
+            case "resolve":
+                resolve(options);
+                break;
+            default:
+                exit(USAGE);
+        }
+    }
+
+    private static void serve(Map<String, String> options) throws IOException {
+        CleanServer server = startServer(
+            options.getOrDefault("host", "127.0.0.1"), intOption(options, "port", 8080), options);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Listening on http://" + hostAndPort(server.address()));
+    }
+
+    private static void loadTest(Map<String, String> options) throws Exception {
+        List<String> urls;
+        if (options.containsKey("input")) {
+            try (BufferedReader reader = Files.newBufferedReader(
+                    Paths.get(options.get("input")), StandardCharsets.UTF_8)) {
+                urls = readLines(reader);
+            }
+        } else {
+            urls = LoadTest.sampleUrls();
+        }
+        if (urls.isEmpty()) {
+            exit("no URLs to send");
+        }
+
+        CleanServer server = null;
+        String target = options.get("target");
+        if (target == null) {
+            server = startServer("127.0.0.1", 0, options);
+            target = "http://" + hostAndPort(server.address());
+        }
+        // One pooled connection per client thread
+        System.setProperty("http.maxConnections",
+            String.valueOf(intOption(options, "clients", Runtime.getRuntime().availableProcessors())));
+        LoadTest test = new LoadTest(target, urls, intOption(options, "batch", 100),
+            intOption(options, "clients", Runtime.getRuntime().availableProcessors()));
+        System.out.println("Load testing " + target);
+        System.out.println(test.run(intOption(options, "warmup", 3), intOption(options, "seconds", 10)));
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private static void bulk(Map<String, String> options) throws IOException {
+        BulkCleaner cleaner = new BulkCleaner(
+            intOption(options, "threads", Runtime.getRuntime().availableProcessors()),
+            intOption(options, "chunk-mb", 8) * 1024 * 1024);
+        String input = options.getOrDefault("input", "-");
+        String output = options.getOrDefault("output", "-");
+        try (WritableByteChannel out = output.equals("-") ?
+                new FileOutputStream(FileDescriptor.out).getChannel() :
+                FileChannel.open(Paths.get(output), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BulkCleaner.Result result;
+            if (input.equals("-")) {
+                result = cleaner.clean(Channels.newChannel(System.in), out);
+            } else {
+                try (FileChannel in = FileChannel.open(Paths.get(input), StandardOpenOption.READ)) {
+                    result = cleaner.clean(in, out);
+                }
+            }
+            System.err.println(result);
+        }
+    }
+
+    private static void resolve(Map<String, String> options) throws IOException, InterruptedException {
+        String input = options.getOrDefault("input", "-");
+        List<String> urls;
+        try (BufferedReader reader = input.equals("-") ?
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)) :
+                Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8)) {
+            urls = readLines(reader);
+        }
+        int timeout = intOption(options, "timeout-ms", 3000);
+        try (ShortLinkResolver resolver = ShortLinkResolver.builder()
+                .threads(intOption(options, "threads", 8))
+                .perHostConcurrency(intOption(options, "per-host", 4))
+                .connectTimeout(timeout)
+                .readTimeout(timeout)
+                .build()) {
+            for (String url : resolver.resolveAll(urls)) {
+                System.out.println(url);
+            }
+        }
+    }
+
+    private static CleanServer startServer(String host, int port, Map<String, String> options)
+            throws IOException {
+        // Read once, when the JDK's HTTP server is first used; see CleanServer
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        CleanServer server = new CleanServer(new InetSocketAddress(host, port),
+            intOption(options, "threads", Runtime.getRuntime().availableProcessors()),
+            intOption(options, "queue", 1024));
+        server.start();
+        return server;
+    }
+
+    static List<String> readLines(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+    private static String hostAndPort(InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                exit("bad option '" + args[i] + "'\n" + USAGE);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            exit("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,126 @@
+package com.notrackers.app;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Writer;
+
+/**
+ * Just enough JSON to stream an array of strings in and out. Malformed
+ * input is reported as {@link IllegalArgumentException}.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /** Peeks at the first character for an opening '['. */
+    static boolean startsWithArray(PushbackReader in) throws IOException {
+        int c = in.read();
+        if (c != -1) {
+            in.unread(c);
+        }
+        return c == '[';
+    }
+
+    static void expect(PushbackReader in, char expected) throws IOException {
+        int c = skipWhitespace(in);
+        if (c != expected) {
+            throw new IllegalArgumentException("expected '" + expected + "' but found "
+                + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        }
+    }
+
+    /** Consumes {@code expected} if it is the next non-whitespace character. */
+    static boolean skipIf(PushbackReader in, char expected) throws IOException {
+        int c = skipWhitespace(in);
+        if (c == expected) {
+            return true;
+        }
+        if (c != -1) {
+            in.unread(c);
+        }
+        return false;
+    }
+
+    /** Reads a string of at most {@code maxLength} characters. */
+    static String readString(PushbackReader in, int maxLength) throws IOException {
+        expect(in, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = in.read();
+            if (c == -1) {
+                throw new IllegalArgumentException("unterminated string");
+            }
+            if (value.length() == maxLength && c != '"') {
+                throw new IllegalArgumentException("string longer than " + maxLength + " characters");
+            }
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append((char) c);
+                continue;
+            }
+            int escape = in.read();
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append((char) escape);
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(in.read(), 16);
+                        if (digit == -1) {
+                            throw new IllegalArgumentException("bad \\u escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    value.append((char) code);
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad escape");
+            }
+        }
+    }
+
+    static void writeString(String value, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    private static int skipWhitespace(PushbackReader in) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+}
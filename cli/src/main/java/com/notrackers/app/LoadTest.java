@@ -0,0 +1,189 @@
+package com.notrackers.app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Drives {@link CleanServer}'s batch endpoint from several client threads
+ * over keep-alive connections and reports throughput and latency. Latency
+ * is per request; throughput counts URLs.
+ */
+final class LoadTest {
+
+    private final URL batchUrl;
+    private final byte[] body;
+    private final int urlsPerRequest;
+    private final int clients;
+
+    LoadTest(String target, List<String> urls, int batchSize, int clients) throws IOException {
+        this.batchUrl = new URL(target + "/batch");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < batchSize; i++) {
+            lines.append(urls.get(i % urls.size())).append('\n');
+        }
+        this.body = lines.toString().getBytes(StandardCharsets.UTF_8);
+        this.urlsPerRequest = batchSize;
+        this.clients = clients;
+    }
+
+    /** Runs for {@code warmupSeconds} unmeasured, then {@code seconds} measured. */
+    Result run(int warmupSeconds, int seconds) throws InterruptedException {
+        drive(warmupSeconds);
+        return drive(seconds);
+    }
+
+    private Result drive(int seconds) throws InterruptedException {
+        Client[] threads = new Client[clients];
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Client(start, deadline);
+            threads[i].start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Client thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - began;
+
+        int requests = 0;
+        int errors = 0;
+        for (Client thread : threads) {
+            requests += thread.count;
+            errors += thread.errors;
+        }
+        long[] latencies = new long[requests];
+        int filled = 0;
+        for (Client thread : threads) {
+            System.arraycopy(thread.latencies, 0, latencies, filled, thread.count);
+            filled += thread.count;
+        }
+        Arrays.sort(latencies);
+        return new Result(requests, (long) requests * urlsPerRequest, errors, elapsed, latencies);
+    }
+
+    private final class Client extends Thread {
+        private final CountDownLatch start;
+        private final long deadline;
+        long[] latencies = new long[1024];
+        int count;
+        int errors;
+
+        Client(CountDownLatch start, long deadline) {
+            this.start = start;
+            this.deadline = deadline;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            byte[] sink = new byte[8192];
+            while (System.nanoTime() < deadline) {
+                long sent = System.nanoTime();
+                try {
+                    post(sink);
+                } catch (IOException e) {
+                    errors++;
+                    continue;
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = System.nanoTime() - sent;
+            }
+        }
+
+        // Reads the response to the end so the connection goes back to the keep-alive pool
+        private void post(byte[] sink) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) batchUrl.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            if (connection.getResponseCode() != 200) {
+                drain(connection.getErrorStream(), sink);
+                throw new IOException("HTTP " + connection.getResponseCode());
+            }
+            drain(connection.getInputStream(), sink);
+        }
+    }
+
+    private static void drain(InputStream in, byte[] sink) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream stream = in) {
+            while (stream.read(sink) != -1) {
+                // discard
+            }
+        }
+    }
+
+    /** A small mix of tracked, redirected and already-clean links. */
+    static List<String> sampleUrls() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                LoadTest.class.getResourceAsStream("/loadtest/urls.txt"), StandardCharsets.UTF_8))) {
+            return CleanerCli.readLines(reader);
+        }
+    }
+
+    static final class Result {
+        final int requests;
+        final long urls;
+        final int errors;
+        final long elapsedNanos;
+        private final long[] sortedLatencies;
+
+        Result(int requests, long urls, int errors, long elapsedNanos, long[] sortedLatencies) {
+            this.requests = requests;
+            this.urls = urls;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+        }
+
+        double urlsPerSecond() {
+            return urls * 1e9 / elapsedNanos;
+        }
+
+        double requestsPerSecond() {
+            return requests * 1e9 / elapsedNanos;
+        }
+
+        double latencyMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d URLs, %d errors in %.1f s%n"
+                    + "%.0f URLs/s, %.0f requests/s%n"
+                    + "latency ms: p50 %.2f, p99 %.2f, max %.2f",
+                requests, urls, errors, elapsedNanos / 1e9,
+                urlsPerSecond(), requestsPerSecond(),
+                latencyMillis(50), latencyMillis(99), latencyMillis(100));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.notrackers.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks {@link ShortLinkResolver} against a stand-in shortener on a
+ * loopback port: redirect chains with relative and cleaned hops, a
+ * redirect loop, a HEAD-less server, a slow server, per-host concurrency
+ * and the in-memory and persistent result caches. Run by the {@code verifyShortLinks} task.
+ */
+final class ShortLinkCheck {
+
+    private static final int PER_HOST = 2;
+
+    private final AtomicInteger chainRequests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final List<String> failures = new ArrayList<>();
+
+    private ShortLinkCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ShortLinkCheck check = new ShortLinkCheck();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.createContext("/s/", check::handle);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        try {
+            check.run("http://127.0.0.1:" + server.getAddress().getPort());
+        } finally {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+        for (String failure : check.failures) {
+            System.err.println(failure);
+        }
+        System.out.printf("%d failures%n", check.failures.size());
+        if (!check.failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private void run(String base) throws Exception {
+        try (ShortLinkResolver resolver = ShortLinkResolver.builder()
+                .hosts("127.0.0.1")
+                .perHostConcurrency(PER_HOST)
+                .threads(8)
+                .readTimeout(500)
+                .build()) {
+            // Two hops, then a Google redirector the cleaner unwraps offline
+            expect("chain", resolver.resolve(base + "/s/a?utm_source=x").get(), "https://example.com/page?id=1");
+            expect("cached", resolver.resolve(base + "/s/a").get(), "https://example.com/page?id=1");
+            expect("cache hits", chainRequests.get(), 1);
+            expect("loop", resolver.resolve(base + "/s/loop").get(), base + "/s/loop");
+            expect("GET fallback", resolver.resolve(base + "/s/get-only").get(), "https://example.com/get");
+            expect("timeout", resolver.resolve(base + "/s/slow").get(), base + "/s/slow");
+            expect("not a short link", resolver.resolve("https://example.com/?fbclid=1").get(), "https://example.com/");
+
+            List<String> links = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                links.add(base + "/s/count/" + i);
+                expected.add("https://example.com/c/" + i);
+            }
+            expect("resolveAll", resolver.resolveAll(links), expected);
+            if (maxActive.get() > PER_HOST) {
+                failures.add("per-host limit: " + maxActive.get() + " concurrent requests, limit " + PER_HOST);
+            }
+        }
+
+        // A second resolver finds the chain in the persistent cache
+        File directory = Files.createTempDirectory("short-links").toFile();
+        try (PersistentCache cache = PersistentCache.open(directory)) {
+            for (int i = 0; i < 2; i++) {
+                try (ShortLinkResolver resolver = ShortLinkResolver.builder()
+                        .hosts("127.0.0.1")
+                        .persistentCache(cache)
+                        .build()) {
+                    expect("persistent " + i, resolver.resolve(base + "/s/a").get(), "https://example.com/page?id=1");
+                }
+            }
+            expect("persistent hits", chainRequests.get(), 2);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        try {
+            if (path.equals("/s/a")) {
+                chainRequests.incrementAndGet();
+                redirect(exchange, 301, "/s/b");
+            } else if (path.equals("/s/b")) {
+                redirect(exchange, 302,
+                    "https://www.google.com/url?q=https%3A%2F%2Fexample.com%2Fpage%3Futm_source%3Dx%26id%3D1");
+            } else if (path.equals("/s/loop")) {
+                redirect(exchange, 302, "/s/loop");
+            } else if (path.equals("/s/get-only")) {
+                if (method.equals("HEAD")) {
+                    exchange.sendResponseHeaders(405, -1);
+                } else {
+                    redirect(exchange, 302, "https://example.com/get?utm_medium=email");
+                }
+            } else if (path.equals("/s/slow")) {
+                sleep(2000);
+                redirect(exchange, 302, "https://example.com/slow");
+            } else if (path.startsWith("/s/count/")) {
+                int running = active.incrementAndGet();
+                maxActive.accumulateAndGet(running, Math::max);
+                sleep(50);
+                active.decrementAndGet();
+                redirect(exchange, 302, "https://example.com/c/" + path.substring("/s/count/".length()));
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void redirect(HttpExchange exchange, int status, String location) throws IOException {
+        exchange.getResponseHeaders().set("Location", location);
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void expect(String name, Object actual, Object expected) {
+        if (!expected.equals(actual)) {
+            failures.add(name + ": expected " + expected + ", got " + actual);
+        }
+    }
+}